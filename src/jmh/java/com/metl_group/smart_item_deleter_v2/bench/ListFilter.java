@@ -0,0 +1,21 @@
+package com.metl_group.smart_item_deleter_v2.bench;
+
+import com.metl_group.smart_item_deleter_v2.core.plan.ItemFilter;
+
+import java.util.BitSet;
+
+/** Filter list over synthetic item ids, standing in for the compiled config filter. */
+final class ListFilter implements ItemFilter {
+    private final boolean whitelist;
+    private final BitSet listed = new BitSet();
+
+    ListFilter(boolean whitelist, int[] ids) {
+        this.whitelist = whitelist;
+        for (int id : ids) listed.set(id);
+    }
+
+    @Override
+    public boolean allowsDeletion(int itemId) {
+        return listed.get(itemId) == whitelist;
+    }
+}
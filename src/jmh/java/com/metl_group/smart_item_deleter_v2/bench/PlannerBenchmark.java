@@ -0,0 +1,87 @@
+package com.metl_group.smart_item_deleter_v2.bench;
+
+import com.metl_group.smart_item_deleter_v2.core.plan.CleanupPlanner;
+import com.metl_group.smart_item_deleter_v2.core.plan.PlayerIndex;
+import com.metl_group.smart_item_deleter_v2.core.plan.ZoneIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of planning one level: eligibility over every item, ordering and quota. Config values are the defaults
+ * (minItemAgeMs 15000, deletePercentage 80, playerSafeRadius 8, hot spots at 64 items) except the threshold, which
+ * sits at half the population so every size actually plans.
+ * Run with {@code ./gradlew jmh}; pass JMH options with {@code -PjmhArgs="..."}, e.g. {@code -PjmhArgs="-p items=200000"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlannerBenchmark {
+    private static final long NOW_MS = 10_000_000L;
+    private static final int CHUNK_RADIUS = 16;
+    private static final int PLAYER_RADIUS = 8;
+    private static final long MIN_AGE_MS = 15_000L;
+    private static final int DELETE_PERCENTAGE = 80;
+    private static final int CHUNK_DENSITY = 64;
+
+    @Param({"1000", "10000", "50000", "200000"})
+    public int items;
+
+    /** Entries in the (blacklist) filter list. */
+    @Param({"0", "16", "256"})
+    public int filterSize;
+
+    @Param({"0", "8", "64"})
+    public int players;
+
+    /** Protection boxes; half as many chunk-sized areas are added on top. */
+    @Param({"0", "256"})
+    public int zones;
+
+    @Param({"OLDEST", "DENSEST_CHUNKS", "TICK_COST"})
+    public CleanupPlanner.Ordering ordering;
+
+    private SyntheticItems view;
+    private CleanupPlanner planner;
+
+    @Setup
+    public void setup() {
+        view = new SyntheticItems(items, CHUNK_RADIUS, 4, 0.25, NOW_MS, 600_000L, 42L);
+        double[] playerBoxes = SyntheticItems.playerBoxes(players, CHUNK_RADIUS, 7L);
+        int[] zoneBoxes = SyntheticItems.zoneBoxes(zones, CHUNK_RADIUS, 11L);
+        int[] areas = new int[zones / 2 * 4];
+        for (int a = 0; a < zones / 2; a++) {
+            int cx = zoneBoxes[a * 6] >> 4, cz = zoneBoxes[a * 6 + 2] >> 4;
+            areas[a * 4] = areas[a * 4 + 2] = cx;
+            areas[a * 4 + 1] = areas[a * 4 + 3] = cz;
+        }
+
+        SplittableRandom rnd = new SplittableRandom(13L);
+        int[] listed = new int[filterSize];
+        for (int i = 0; i < filterSize; i++) listed[i] = rnd.nextInt(SyntheticItems.ITEM_IDS);
+
+        CleanupPlanner.Settings settings = new CleanupPlanner.Settings(
+                items / 2, MIN_AGE_MS, DELETE_PERCENTAGE, true, ordering, CHUNK_DENSITY);
+        planner = new CleanupPlanner(settings, PlayerIndex.build(playerBoxes, players, PLAYER_RADIUS),
+                ZoneIndex.build(areas, zones / 2, zoneBoxes, zones), new ListFilter(false, listed));
+    }
+
+    @Benchmark
+    public CleanupPlanner.Plan plan() {
+        return planner.plan(view, NOW_MS, items);
+    }
+}
@@ -0,0 +1,144 @@
+package com.metl_group.smart_item_deleter_v2.bench;
+
+import com.metl_group.smart_item_deleter_v2.core.plan.ItemView;
+
+import java.util.SplittableRandom;
+
+/**
+ * Seeded item population spread over a square of chunks around the origin, with a share of the items piled
+ * into a few farm chunks. Ages are uniform over the last {@code maxAgeMs}, about 1% of the stacks are named.
+ * The inner half of the square is entity-ticking; the first farm chunk is force-loaded.
+ */
+final class SyntheticItems implements ItemView {
+    static final int ITEM_IDS = 1300; // roughly the size of the vanilla item registry
+
+    private final long[] firstSeen;
+    private final long[] chunk;
+    private final int[] itemId;
+    private final boolean[] named;
+    private final byte[] flags;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+
+    SyntheticItems(int count, int chunkRadius, int hotChunks, double hotShare, long nowMs, long maxAgeMs, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        firstSeen = new long[count];
+        chunk = new long[count];
+        itemId = new int[count];
+        named = new boolean[count];
+        flags = new byte[count];
+        x = new double[count];
+        y = new double[count];
+        z = new double[count];
+
+        int[] hotX = new int[hotChunks], hotZ = new int[hotChunks];
+        for (int h = 0; h < hotChunks; h++) {
+            hotX[h] = rnd.nextInt(-chunkRadius, chunkRadius);
+            hotZ[h] = rnd.nextInt(-chunkRadius, chunkRadius);
+        }
+        for (int i = 0; i < count; i++) {
+            int cx, cz;
+            boolean forced = false;
+            if (hotChunks > 0 && rnd.nextDouble() < hotShare) {
+                int h = rnd.nextInt(hotChunks);
+                cx = hotX[h];
+                cz = hotZ[h];
+                forced = h == 0;
+            } else {
+                cx = rnd.nextInt(-chunkRadius, chunkRadius);
+                cz = rnd.nextInt(-chunkRadius, chunkRadius);
+            }
+            x[i] = (cx << 4) + rnd.nextDouble() * 16;
+            z[i] = (cz << 4) + rnd.nextDouble() * 16;
+            y[i] = 60 + rnd.nextDouble() * 10;
+            chunk[i] = ((long) cz << 32) | (cx & 0xFFFFFFFFL); // ChunkPos#asLong layout
+            boolean ticking = forced || (Math.abs(cx) <= chunkRadius / 2 && Math.abs(cz) <= chunkRadius / 2);
+            flags[i] = (byte) ((ticking ? ENTITY_TICKING : 0) | (forced ? ALWAYS_LOADED : 0));
+            firstSeen[i] = nowMs - rnd.nextLong(maxAgeMs);
+            itemId[i] = rnd.nextInt(ITEM_IDS);
+            named[i] = rnd.nextInt(100) == 0;
+        }
+    }
+
+    /** Player boxes (0.6 x 1.8) at random spots of the same area, packed as {@code PlayerIndex#build} expects. */
+    static double[] playerBoxes(int count, int chunkRadius, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        double[] boxes = new double[count * 6];
+        int blocks = chunkRadius << 4;
+        for (int p = 0; p < count; p++) {
+            double px = rnd.nextDouble(-blocks, blocks), py = 64, pz = rnd.nextDouble(-blocks, blocks);
+            int o = p * 6;
+            boxes[o] = px - 0.3;
+            boxes[o + 1] = py;
+            boxes[o + 2] = pz - 0.3;
+            boxes[o + 3] = px + 0.3;
+            boxes[o + 4] = py + 1.8;
+            boxes[o + 5] = pz + 0.3;
+        }
+        return boxes;
+    }
+
+    /** {@code count} packed protection boxes (inclusive block bounds), 8 to 40 blocks wide, spread like the items. */
+    static int[] zoneBoxes(int count, int chunkRadius, long seed) {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        int[] boxes = new int[count * 6];
+        int blocks = chunkRadius << 4;
+        for (int b = 0; b < count; b++) {
+            int x = rnd.nextInt(-blocks, blocks), z = rnd.nextInt(-blocks, blocks);
+            int o = b * 6;
+            boxes[o] = x;
+            boxes[o + 1] = 0;
+            boxes[o + 2] = z;
+            boxes[o + 3] = x + rnd.nextInt(8, 41);
+            boxes[o + 4] = 128;
+            boxes[o + 5] = z + rnd.nextInt(8, 41);
+        }
+        return boxes;
+    }
+
+    @Override
+    public int size() {
+        return firstSeen.length;
+    }
+
+    @Override
+    public long firstSeenMs(int i) {
+        return firstSeen[i];
+    }
+
+    @Override
+    public long chunk(int i) {
+        return chunk[i];
+    }
+
+    @Override
+    public int itemId(int i) {
+        return itemId[i];
+    }
+
+    @Override
+    public int chunkFlags(int i) {
+        return flags[i];
+    }
+
+    @Override
+    public boolean isNamed(int i) {
+        return named[i];
+    }
+
+    @Override
+    public double x(int i) {
+        return x[i];
+    }
+
+    @Override
+    public double y(int i) {
+        return y[i];
+    }
+
+    @Override
+    public double z(int i) {
+        return z[i];
+    }
+}
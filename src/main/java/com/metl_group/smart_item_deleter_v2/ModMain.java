@@ -8,6 +8,7 @@ import net.neoforged.fml.config.ModConfig;
 import net.neoforged.fml.event.config.ModConfigEvent;
 import net.neoforged.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.neoforged.neoforge.event.RegisterCommandsEvent;
+import net.neoforged.neoforge.event.TagsUpdatedEvent;
 
 import com.metl_group.smart_item_deleter_v2.command.CleanupCommands;
 import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
@@ -51,5 +52,13 @@ public final class ModMain {
         public static void onRegisterCommands(final RegisterCommandsEvent e) {
             CleanupCommands.register(e.getDispatcher());
         }
+
+        // Tag-Inhalte ändern sich bei /reload – kompilierte Filterliste neu aufbauen
+        @SubscribeEvent
+        public static void onTagsUpdated(final TagsUpdatedEvent e) {
+            if (e.getUpdateCause() == TagsUpdatedEvent.UpdateCause.SERVER_DATA_LOAD) {
+                CleanupConfig.rebuildFilter();
+            }
+        }
     }
 }
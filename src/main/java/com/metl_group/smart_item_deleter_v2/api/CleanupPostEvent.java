@@ -0,0 +1,66 @@
+package com.metl_group.smart_item_deleter_v2.api;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMaps;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMaps;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.item.Item;
+import net.neoforged.bus.api.Event;
+
+/**
+ * Posted on {@code NeoForge.EVENT_BUS} once per level and cycle, on the server thread, after the cycle finished.
+ * Deletions are broken down per item type and per chunk ({@code ChunkPos#asLong}, position at deletion time).
+ * The maps are read-only views; copy them if they are needed after the listener returns.
+ */
+public final class CleanupPostEvent extends Event {
+    private final ServerLevel level;
+    private final int items;
+    private final int deleted;
+    private final int merged;
+    private final int vetoed;
+    private final Reference2IntMap<Item> deletedByItem;
+    private final Long2IntMap deletedByChunk;
+
+    public CleanupPostEvent(ServerLevel level, int items, int deleted, int merged, int vetoed,
+                            Reference2IntMap<Item> deletedByItem, Long2IntMap deletedByChunk) {
+        this.level = level;
+        this.items = items;
+        this.deleted = deleted;
+        this.merged = merged;
+        this.vetoed = vetoed;
+        this.deletedByItem = Reference2IntMaps.unmodifiable(deletedByItem);
+        this.deletedByChunk = Long2IntMaps.unmodifiable(deletedByChunk);
+    }
+
+    public ServerLevel getLevel() {
+        return level;
+    }
+
+    /** Item entities in the level when the cycle started. */
+    public int getItems() {
+        return items;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    /** Entities merged into other stacks before deleting. */
+    public int getMerged() {
+        return merged;
+    }
+
+    /** Candidates skipped because a {@link CleanupPreEvent} listener vetoed them. */
+    public int getVetoed() {
+        return vetoed;
+    }
+
+    public Reference2IntMap<Item> getDeletedByItem() {
+        return deletedByItem;
+    }
+
+    public Long2IntMap getDeletedByChunk() {
+        return deletedByChunk;
+    }
+}
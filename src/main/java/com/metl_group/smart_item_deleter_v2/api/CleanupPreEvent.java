@@ -0,0 +1,86 @@
+package com.metl_group.smart_item_deleter_v2.api;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.neoforged.bus.api.Event;
+import net.neoforged.bus.api.ICancellableEvent;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Posted on {@code NeoForge.EVENT_BUS} once per level and cycle, on the server thread, right before planned victims
+ * are deleted. The candidates are a read-only view in deletion order; index {@code i} is the {@code i}-th
+ * candidate. Listeners can veto single candidates or a whole bitmask at once, or cancel the event to skip deletion
+ * in this level for this cycle.
+ * <p>
+ * The view holds more candidates than {@link #getToDelete()}: vetoed candidates (and ones that were picked up or
+ * moved meanwhile) are skipped and later candidates take their place. Entities must not be modified or removed from
+ * a listener, and the event must not be kept after the listener returns.
+ */
+public final class CleanupPreEvent extends Event implements ICancellableEvent {
+    private final ServerLevel level;
+    private final List<ItemEntity> items;
+    private final int[] order;
+    private final IntToLongFunction firstSeenMs;
+    private final int toDelete;
+    private final BitSet vetoed;
+
+    /** {@code order} holds indices into {@code items}; {@code firstSeenMs} is keyed by the same indices. */
+    public CleanupPreEvent(ServerLevel level, List<ItemEntity> items, int[] order, IntToLongFunction firstSeenMs,
+                           int toDelete) {
+        this.level = level;
+        this.items = items;
+        this.order = order;
+        this.firstSeenMs = firstSeenMs;
+        this.toDelete = toDelete;
+        this.vetoed = new BitSet(order.length);
+    }
+
+    public ServerLevel getLevel() {
+        return level;
+    }
+
+    /** Number of candidates in the view. */
+    public int size() {
+        return order.length;
+    }
+
+    /** How many items the cycle will delete at most. */
+    public int getToDelete() {
+        return toDelete;
+    }
+
+    public ItemEntity getEntity(int i) {
+        return items.get(order[i]);
+    }
+
+    /** When the item was first seen, in the cycle's clock ({@code tickCount * 50}). */
+    public long getFirstSeenMs(int i) {
+        return firstSeenMs.applyAsLong(order[i]);
+    }
+
+    public void veto(int i) {
+        if (i < 0 || i >= order.length) throw new IndexOutOfBoundsException(i);
+        vetoed.set(i);
+    }
+
+    /** Veto every candidate whose bit is set in {@code mask}; bits past {@link #size()} are ignored. */
+    public void veto(BitSet mask) {
+        vetoed.or(mask.length() > order.length ? mask.get(0, order.length) : mask);
+    }
+
+    public boolean isVetoed(int i) {
+        return vetoed.get(i);
+    }
+
+    public int getVetoCount() {
+        return vetoed.cardinality();
+    }
+
+    /** Copy of the veto bits, indexed like the view. */
+    public BitSet getVetoMask() {
+        return (BitSet) vetoed.clone();
+    }
+}
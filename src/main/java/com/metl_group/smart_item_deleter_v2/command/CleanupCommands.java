@@ -1,12 +1,33 @@
 package com.metl_group.smart_item_deleter_v2.command;
 
+import com.metl_group.smart_item_deleter_v2.core.DryRun;
 import com.metl_group.smart_item_deleter_v2.core.ItemCleanupSystem;
+import com.metl_group.smart_item_deleter_v2.core.LevelSchedule;
+import com.metl_group.smart_item_deleter_v2.core.LevelStats;
+import com.metl_group.smart_item_deleter_v2.core.LiveItemRegistry;
+import com.metl_group.smart_item_deleter_v2.core.RegionSweep;
+import com.metl_group.smart_item_deleter_v2.persist.ProtectionZone;
+import com.metl_group.smart_item_deleter_v2.persist.ProtectionZonesData;
+import com.metl_group.smart_item_deleter_v2.persist.TrackedItemsData;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.Commands;
+import net.minecraft.commands.SharedSuggestionProvider;
+import net.minecraft.commands.arguments.coordinates.BlockPosArgument;
+import net.minecraft.commands.arguments.coordinates.ColumnPosArgument;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ColumnPos;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.Locale;
 
 public final class CleanupCommands {
+    private static final int DRYRUN_TYPES = 8;
+
     private CleanupCommands(){}
 
     public static void register(CommandDispatcher<CommandSourceStack> d) {
@@ -17,7 +38,7 @@ public final class CleanupCommands {
                             var srv = ctx.getSource().getServer();
                             long now = srv.getTickCount() * 50L;
                             for (var level : srv.getAllLevels()) {
-                                // Optional: forced variant
+                                // Runs to completion in this tick on purpose, ignoring cycleBudgetNanos
                                 ItemCleanupSystem.runCycle(level, now);
                             }
                             ctx.getSource().sendSuccess(() -> Component.literal("Forced cleanup executed."), true);
@@ -25,17 +46,209 @@ public final class CleanupCommands {
                         })
                 )
                 .then(Commands.literal("stats")
-                        .executes(ctx -> {
-                            ctx.getSource().sendSuccess(() -> net.minecraft.network.chat.Component.literal("Cleanup v2: Stats coming soon."), false);
-                            return 1;
-                        })
+                        .executes(ctx -> stats(ctx.getSource()))
                 )
                 .then(Commands.literal("dryrun")
-                        .executes(ctx -> {
-                            ctx.getSource().sendSuccess(() -> net.minecraft.network.chat.Component.literal("Dry-run: Vorschau coming soon."), false);
-                            return 1;
-                        })
+                        .executes(ctx -> dryRun(ctx.getSource()))
+                )
+                .then(Commands.literal("sweep")
+                        .executes(ctx -> sweep(ctx.getSource(), false))
+                        .then(Commands.literal("dryrun")
+                                .executes(ctx -> sweep(ctx.getSource(), true)))
+                        .then(Commands.literal("cancel")
+                                .executes(ctx -> {
+                                    if (!RegionSweep.cancel()) {
+                                        ctx.getSource().sendFailure(Component.literal("No region sweep is running."));
+                                        return 0;
+                                    }
+                                    ctx.getSource().sendSuccess(() -> Component.literal("Region sweep cancelled."), true);
+                                    return 1;
+                                }))
+                )
+                .then(Commands.literal("zone")
+                        .then(Commands.literal("add")
+                                .then(Commands.literal("box")
+                                        .then(Commands.argument("name", StringArgumentType.word())
+                                                .then(Commands.argument("from", BlockPosArgument.blockPos())
+                                                        .then(Commands.argument("to", BlockPosArgument.blockPos())
+                                                                .executes(ctx -> {
+                                                                    BlockPos a = BlockPosArgument.getBlockPos(ctx, "from");
+                                                                    BlockPos b = BlockPosArgument.getBlockPos(ctx, "to");
+                                                                    return addZone(ctx.getSource(), ProtectionZone.of(
+                                                                            StringArgumentType.getString(ctx, "name"),
+                                                                            ProtectionZone.Kind.BOX,
+                                                                            a.getX(), a.getY(), a.getZ(), b.getX(), b.getY(), b.getZ()));
+                                                                })))))
+                                .then(Commands.literal("chunks")
+                                        .then(Commands.argument("name", StringArgumentType.word())
+                                                .then(Commands.argument("from", ColumnPosArgument.columnPos())
+                                                        .then(Commands.argument("to", ColumnPosArgument.columnPos())
+                                                                .executes(ctx -> {
+                                                                    ColumnPos a = ColumnPosArgument.getColumnPos(ctx, "from");
+                                                                    ColumnPos b = ColumnPosArgument.getColumnPos(ctx, "to");
+                                                                    return addZone(ctx.getSource(), ProtectionZone.of(
+                                                                            StringArgumentType.getString(ctx, "name"),
+                                                                            ProtectionZone.Kind.CHUNKS,
+                                                                            SectionPos.blockToSectionCoord(a.x()), 0, SectionPos.blockToSectionCoord(a.z()),
+                                                                            SectionPos.blockToSectionCoord(b.x()), 0, SectionPos.blockToSectionCoord(b.z())));
+                                                                })))))
+                        )
+                        .then(Commands.literal("remove")
+                                .then(Commands.argument("name", StringArgumentType.word())
+                                        .suggests((ctx, builder) -> SharedSuggestionProvider.suggest(
+                                                ProtectionZonesData.get(ctx.getSource().getLevel()).zones().stream()
+                                                        .map(ProtectionZone::name), builder))
+                                        .executes(ctx -> removeZone(ctx.getSource(), StringArgumentType.getString(ctx, "name")))))
+                        .then(Commands.literal("list")
+                                .executes(ctx -> listZones(ctx.getSource())))
                 )
         );
     }
+
+    /** Sweep the entity region files of every level in the background; one report line per level. */
+    private static int sweep(CommandSourceStack src, boolean dryRun) {
+        if (!RegionSweep.start(src.getServer(), dryRun, r -> send(src, String.format(Locale.ROOT,
+                "Sweep %s%s: %d regions, %d chunks, %d of %d stored items %s in %d chunks; skipped loaded=%d recent=%d other=%d, read %.1f MiB",
+                r.dimension().location(), r.dryRun() ? " (dry-run)" : "", r.regions(), r.chunks(), r.removed(), r.items(),
+                r.dryRun() ? "removable" : "removed", r.changedChunks(), r.skippedLoaded(), r.skippedRecent(),
+                r.skippedOther(), r.bytesRead() / (1024.0 * 1024.0)))))) {
+            src.sendFailure(Component.literal("A region sweep is already running."));
+            return 0;
+        }
+        src.sendSuccess(() -> Component.literal(dryRun
+                ? "Region sweep (dry-run) started." : "Region sweep started; unloaded chunks lose their eligible items."), true);
+        return 1;
+    }
+
+    /** Zones belong to the dimension the command is run in. */
+    private static int addZone(CommandSourceStack src, ProtectionZone zone) {
+        var level = src.getLevel();
+        if (!ProtectionZonesData.get(level).add(zone)) {
+            src.sendFailure(Component.literal("A zone named '" + zone.name() + "' already exists in "
+                    + level.dimension().location() + "."));
+            return 0;
+        }
+        src.sendSuccess(() -> Component.literal("Added protection zone " + describe(zone)
+                + " in " + level.dimension().location() + "."), true);
+        return 1;
+    }
+
+    private static int removeZone(CommandSourceStack src, String name) {
+        var level = src.getLevel();
+        if (!ProtectionZonesData.get(level).remove(name)) {
+            src.sendFailure(Component.literal("No zone named '" + name + "' in " + level.dimension().location() + "."));
+            return 0;
+        }
+        src.sendSuccess(() -> Component.literal("Removed protection zone '" + name + "'."), true);
+        return 1;
+    }
+
+    private static int listZones(CommandSourceStack src) {
+        var level = src.getLevel();
+        var zones = ProtectionZonesData.get(level).zones();
+        send(src, String.format(Locale.ROOT, "%s: %d protection zone(s)", level.dimension().location(), zones.size()));
+        for (ProtectionZone zone : zones) send(src, "  " + describe(zone));
+        return zones.size();
+    }
+
+    private static String describe(ProtectionZone z) {
+        return z.kind() == ProtectionZone.Kind.CHUNKS
+                ? String.format(Locale.ROOT, "'%s': chunks [%d, %d] to [%d, %d]",
+                        z.name(), z.minX(), z.minZ(), z.maxX(), z.maxZ())
+                : String.format(Locale.ROOT, "'%s': box [%d, %d, %d] to [%d, %d, %d]",
+                        z.name(), z.minX(), z.minY(), z.minZ(), z.maxX(), z.maxY(), z.maxZ());
+    }
+
+    /** Per level: live/tracked counts, cycle cost percentiles, throughput, schedule, phase split, evictions and hot chunks. */
+    private static int stats(CommandSourceStack src) {
+        for (var level : src.getServer().getAllLevels()) {
+            TrackedItemsData data = TrackedItemsData.get(level);
+            LevelStats st = LevelStats.of(level.dimension());
+            send(src, String.format(Locale.ROOT,
+                    "%s: items=%d, tracked=%d, cycles=%d, cycle p50=%s p99=%s max=%s, deleted/min=%d, merged/min=%d",
+                    level.dimension().location(), LiveItemRegistry.of(level).count(), data.size(), st.cycles(),
+                    ms(st.cycleNanos(0.50)), ms(st.cycleNanos(0.99)), ms(st.maxCycleNanos()),
+                    st.deletedPerMinute(), st.mergedPerMinute()));
+
+            LevelSchedule sched = ItemCleanupSystem.schedule(level);
+            if (sched != null) {
+                send(src, String.format(Locale.ROOT, "  schedule: interval=%d ticks, next in %d ticks, growth=%+.1f items/min%s",
+                        sched.intervalTicks(), Math.max(0L, sched.nextRunTick() - level.getServer().getTickCount()),
+                        sched.growthPerMinute(), sched.isBackedOff() ? " (backed off, server above targetMspt)" : ""));
+            }
+
+            if (st.cycles() > 0) {
+                StringBuilder phases = new StringBuilder("  avg phase:");
+                for (int i = 0; i < LevelStats.PHASES.length; i++) {
+                    phases.append(' ').append(LevelStats.PHASES[i]).append('=').append(ms(st.avgPhaseNanos(i)));
+                }
+                phases.append(String.format(Locale.ROOT, ", plan on worker p50=%s p99=%s",
+                        ms(st.planNanos(0.50)), ms(st.planNanos(0.99))));
+                send(src, phases.toString());
+            }
+
+            send(src, String.format(Locale.ROOT, "  evicted stale=%d dead=%d capacity=%d",
+                    data.evictedStale(), data.evictedDead(), data.evictedCapacity()));
+
+            var hot = st.hotChunks();
+            for (int i = 0; i < hot.chunks().length; i++) {
+                ChunkPos cp = new ChunkPos(hot.chunks()[i]);
+                send(src, String.format(Locale.ROOT,
+                        "  #%d chunk [%d, %d] (block %d, %d): %d items",
+                        i + 1, cp.x, cp.z, cp.getMiddleBlockX(), cp.getMiddleBlockZ(), hot.counts()[i]));
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Plan every level like a cycle would, without deleting anything. Planning runs on the worker pool;
+     * the report is sent from the server thread once each level's plan is back.
+     */
+    private static int dryRun(CommandSourceStack src) {
+        var srv = src.getServer();
+        long now = srv.getTickCount() * 50L;
+        for (var level : srv.getAllLevels()) {
+            DryRun.of(level, now)
+                    .thenAcceptAsync(r -> report(src, r), srv)
+                    .exceptionally(ex -> {
+                        srv.execute(() -> src.sendFailure(Component.literal(
+                                "Dry-run failed for " + level.dimension().location() + ": " + ex.getMessage())));
+                        return null;
+                    });
+        }
+        return 1;
+    }
+
+    private static void report(CommandSourceStack src, DryRun r) {
+        send(src, String.format(Locale.ROOT,
+                "Dry-run %s: items=%d, eligible=%d, would delete %d (excess=%d, quota=%d)",
+                r.dimension().location(), r.items(), r.eligible(), r.toDelete(), r.excess(), r.quota()));
+        if (r.toDelete() == 0) return;
+
+        StringBuilder types = new StringBuilder("  by item:");
+        int shown = Math.min(DRYRUN_TYPES, r.victimItemIds().length);
+        for (int j = 0; j < shown; j++) {
+            types.append(j == 0 ? " " : ", ").append(r.victimCounts()[j]).append("x ")
+                    .append(BuiltInRegistries.ITEM.getKey(BuiltInRegistries.ITEM.byId(r.victimItemIds()[j])));
+        }
+        if (r.victimItemIds().length > shown) {
+            types.append(", +").append(r.victimItemIds().length - shown).append(" more types");
+        }
+        send(src, types.toString());
+
+        StringBuilder first = new StringBuilder("  first:");
+        for (long pos : r.firstVictims()) {
+            first.append(String.format(Locale.ROOT, " [%d, %d, %d]", BlockPos.getX(pos), BlockPos.getY(pos), BlockPos.getZ(pos)));
+        }
+        send(src, first.toString());
+    }
+
+    private static void send(CommandSourceStack src, String line) {
+        src.sendSuccess(() -> Component.literal(line), false);
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000.0);
+    }
 }
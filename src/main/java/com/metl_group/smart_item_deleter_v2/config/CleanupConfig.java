@@ -4,6 +4,10 @@ import net.neoforged.neoforge.common.ModConfigSpec;
 
 public final class CleanupConfig {
     public enum FilterMode { BLACKLIST, WHITELIST }
+    public enum ItemSource { SCAN, EVENTS }
+    public enum TrackingPersistence { NBT, COMPACT, BINARY, NONE }
+    public enum AgeSource { TRACKED, NATIVE }
+    public enum SelectionStrategy { OLDEST, DENSEST_CHUNKS, TICK_COST }
 
     public static final ModConfigSpec SERVER_SPEC;
     private static final ModConfigSpec.Builder B = new ModConfigSpec.Builder();
@@ -16,10 +20,57 @@ public final class CleanupConfig {
     public static int playerSafeRadius;
     public static FilterMode filterMode;
     public static java.util.List<String> filterList;
+    public static CompiledFilter compiledFilter;
     public static boolean jitterEnabled;
     public static int scanJitterTicks; // e.g. 2
     private static final ModConfigSpec.BooleanValue CFG_JITTER_ENABLED;
     private static final ModConfigSpec.IntValue CFG_SCAN_JITTER;
+    public static boolean adaptiveInterval;
+    public static double targetMspt;
+    private static final ModConfigSpec.BooleanValue CFG_ADAPTIVE_INTERVAL;
+    private static final ModConfigSpec.DoubleValue CFG_TARGET_MSPT;
+    public static long cycleBudgetNanos;
+    public static SelectionStrategy selectionStrategy;
+    public static int chunkDensityThreshold;
+    private static final ModConfigSpec.EnumValue<SelectionStrategy> CFG_SELECTION;
+    private static final ModConfigSpec.IntValue CFG_CHUNK_DENSITY;
+    private static final ModConfigSpec.LongValue CFG_CYCLE_BUDGET;
+    public static long trackingStaleMs;
+    public static int trackingMaxEntries;
+    public static int evictionSlotsPerTick;
+    public static TrackingPersistence trackingPersistence;
+    public static AgeSource ageSource;
+    private static final ModConfigSpec.EnumValue<AgeSource> CFG_AGE_SOURCE;
+    private static final ModConfigSpec.EnumValue<TrackingPersistence> CFG_TRACKING_PERSISTENCE;
+    private static final ModConfigSpec.LongValue CFG_TRACKING_STALE_MS;
+    private static final ModConfigSpec.IntValue CFG_TRACKING_MAX_ENTRIES;
+    private static final ModConfigSpec.IntValue CFG_EVICTION_SLOTS;
+    public static boolean consolidateStacks;
+    public static int mergeCellSize;
+    public static int mergeBudgetPerCycle;
+    private static final ModConfigSpec.BooleanValue CFG_CONSOLIDATE;
+    private static final ModConfigSpec.IntValue CFG_MERGE_CELL;
+    private static final ModConfigSpec.IntValue CFG_MERGE_BUDGET;
+    public static ItemSource itemSource;
+    public static boolean triggerOnThreshold;
+    public static int reconcileIntervalTicks;
+    private static final ModConfigSpec.EnumValue<ItemSource> CFG_ITEM_SOURCE;
+    private static final ModConfigSpec.BooleanValue CFG_TRIGGER_ON_THRESHOLD;
+    private static final ModConfigSpec.IntValue CFG_RECONCILE_INTERVAL;
+    public static int sweepMaxMibPerSecond;
+    public static int sweepRecentWriteSeconds;
+    private static final ModConfigSpec.IntValue CFG_SWEEP_RATE;
+    private static final ModConfigSpec.IntValue CFG_SWEEP_RECENT;
+    public static boolean historyEnabled;
+    public static int historyMaxFileMib;
+    public static int historyMaxFiles;
+    public static int summaryIntervalSeconds;
+    public static boolean summaryToOps;
+    private static final ModConfigSpec.BooleanValue CFG_HISTORY_ENABLED;
+    private static final ModConfigSpec.IntValue CFG_HISTORY_MAX_FILE;
+    private static final ModConfigSpec.IntValue CFG_HISTORY_MAX_FILES;
+    private static final ModConfigSpec.IntValue CFG_SUMMARY_INTERVAL;
+    private static final ModConfigSpec.BooleanValue CFG_SUMMARY_TO_OPS;
 
     private static final ModConfigSpec.IntValue CFG_SCAN_INTERVAL;
     private static final ModConfigSpec.IntValue CFG_THRESHOLD;
@@ -35,9 +86,70 @@ public final class CleanupConfig {
         CFG_SCAN_INTERVAL = B.defineInRange("scanIntervalTicks", 20, 1, 20_000);
         CFG_SCAN_JITTER    = B.defineInRange("scanJitterTicks", 2, 0, 40);
         CFG_JITTER_ENABLED = B.define("scanJitterEnabled", true);
+        CFG_ADAPTIVE_INTERVAL = B.comment("Per level: shorten the interval while the item count grows fast, lengthen it while stable or below the threshold")
+            .define("adaptiveInterval", true);
+        CFG_TARGET_MSPT    = B.comment("Stretch cleanup intervals while the server's average tick time (ms) is above this (0 = off)")
+            .defineInRange("targetMspt", 45.0, 0.0, 1_000.0);
         CFG_THRESHOLD      = B.defineInRange("entityCountThreshold", 400, 1, 10_000);
         CFG_DELETE_PERCENT = B.defineInRange("deletePercentage", 80, 0, 100);
         CFG_MIN_AGE_MS     = B.defineInRange("minItemAgeMs", 15_000L, 0L, 86_400_000L);
+        CFG_CYCLE_BUDGET   = B.comment("Nanoseconds per tick a cleanup cycle may use before it resumes on the next tick (0 = whole cycle in one tick)")
+            .defineInRange("cycleBudgetNanos", 2_000_000L, 0L, 50_000_000L);
+        CFG_SELECTION      = B.comment("OLDEST = globally oldest first, DENSEST_CHUNKS = drain chunks above chunkDensityThreshold first, TICK_COST = items whose removal frees the most tick time first (entity-ticking, crowded and always-loaded chunks)")
+            .defineEnum("selectionStrategy", SelectionStrategy.OLDEST);
+        CFG_CHUNK_DENSITY  = B.comment("Items per chunk above which a chunk counts as a hot spot; also the crowding scale of TICK_COST")
+            .defineInRange("chunkDensityThreshold", 64, 1, 100_000);
+        B.pop();
+
+        B.push("scan");
+        CFG_ITEM_SOURCE = B.comment("SCAN = query all item entities every interval, EVENTS = live registry fed by join/leave events")
+            .defineEnum("itemSource", ItemSource.SCAN);
+        CFG_TRIGGER_ON_THRESHOLD = B.comment("EVENTS only: run a cycle as soon as the live count crosses entityCountThreshold")
+            .define("triggerOnThreshold", true);
+        CFG_RECONCILE_INTERVAL = B.comment("EVENTS only: ticks between full-scan reconciliations of the live registry (0 = off)")
+            .defineInRange("reconcileIntervalTicks", 6_000, 0, 1_728_000);
+        B.pop();
+
+        B.push("tracking");
+        CFG_TRACKING_STALE_MS = B.comment("Forget tracked items not seen for this long (0 = never)")
+            .defineInRange("trackingStaleMs", 1_800_000L, 0L, 604_800_000L);
+        CFG_TRACKING_MAX_ENTRIES = B.comment("Hard cap on tracked items per level; least recently seen are evicted first")
+            .defineInRange("trackingMaxEntries", 100_000, 1_000, 10_000_000);
+        CFG_EVICTION_SLOTS = B.comment("Tracking table slots checked per tick and level by the incremental eviction sweep")
+            .defineInRange("evictionSlotsPerTick", 1_024, 0, 1_000_000);
+        CFG_TRACKING_PERSISTENCE = B.comment("NBT = original list layout in the .dat (readable by older versions), COMPACT = packed arrays in the .dat, BINARY = side file written off-thread, NONE = do not persist tracking")
+            .defineEnum("trackingPersistence", TrackingPersistence.NBT);
+        CFG_AGE_SOURCE = B.comment("TRACKED = age since the mod first saw the item (tracking table), NATIVE = the item entity's own age, no tracking; rows left from TRACKED still count until evicted")
+            .defineEnum("ageSource", AgeSource.TRACKED);
+        B.pop();
+
+        B.push("merge");
+        CFG_CONSOLIDATE = B.comment("Merge identical eligible drops in the same cell before deleting anything")
+            .define("consolidateStacks", false);
+        CFG_MERGE_CELL = B.comment("Edge length in blocks of the cells drops are merged within")
+            .defineInRange("mergeCellSize", 2, 1, 16);
+        CFG_MERGE_BUDGET = B.comment("Maximum entities merged away per cycle and level")
+            .defineInRange("mergeBudgetPerCycle", 1_000, 0, 100_000);
+        B.pop();
+
+        B.push("sweep");
+        CFG_SWEEP_RATE = B.comment("/cleanup sweep: region file bytes read per second, in MiB (0 = unthrottled)")
+            .defineInRange("sweepMaxMibPerSecond", 16, 0, 4_096);
+        CFG_SWEEP_RECENT = B.comment("/cleanup sweep: skip chunks the server wrote within this many seconds; they are likely to be loaded again soon")
+            .defineInRange("sweepRecentWriteSeconds", 60, 0, 86_400);
+        B.pop();
+
+        B.push("report");
+        CFG_HISTORY_ENABLED = B.comment("Append one JSON line per cycle to <world>/smart_item_deleter_v2/history/, written off the server thread")
+            .define("historyEnabled", false);
+        CFG_HISTORY_MAX_FILE = B.comment("Start a new history file when the current one reaches this size in MiB (a new file is also started every day)")
+            .defineInRange("historyMaxFileMib", 16, 1, 1_024);
+        CFG_HISTORY_MAX_FILES = B.comment("History files to keep; the oldest are deleted")
+            .defineInRange("historyMaxFiles", 30, 1, 10_000);
+        CFG_SUMMARY_INTERVAL = B.comment("Seconds between summary lines covering all dimensions; nothing is logged for periods without deletions (0 = no summaries)")
+            .defineInRange("summaryIntervalSeconds", 60, 0, 86_400);
+        CFG_SUMMARY_TO_OPS = B.comment("Also send the summary to operators in chat")
+            .define("summaryToOps", false);
         B.pop();
 
         B.push("safety");
@@ -63,14 +175,45 @@ public final class CleanupConfig {
         scanIntervalTicks   = CFG_SCAN_INTERVAL.get();
         scanJitterTicks = CFG_SCAN_JITTER.get();
         jitterEnabled   = CFG_JITTER_ENABLED.get();
+        adaptiveInterval = CFG_ADAPTIVE_INTERVAL.get();
+        targetMspt      = CFG_TARGET_MSPT.get();
         entityCountThreshold= CFG_THRESHOLD.get();
         deletePercentage     = CFG_DELETE_PERCENT.get();
         minItemAgeMs        = CFG_MIN_AGE_MS.get();
+        cycleBudgetNanos    = CFG_CYCLE_BUDGET.get();
+        selectionStrategy   = CFG_SELECTION.get();
+        chunkDensityThreshold = CFG_CHUNK_DENSITY.get();
+        itemSource          = CFG_ITEM_SOURCE.get();
+        triggerOnThreshold  = CFG_TRIGGER_ON_THRESHOLD.get();
+        reconcileIntervalTicks = CFG_RECONCILE_INTERVAL.get();
+        sweepMaxMibPerSecond = CFG_SWEEP_RATE.get();
+        sweepRecentWriteSeconds = CFG_SWEEP_RECENT.get();
+        historyEnabled      = CFG_HISTORY_ENABLED.get();
+        historyMaxFileMib   = CFG_HISTORY_MAX_FILE.get();
+        historyMaxFiles     = CFG_HISTORY_MAX_FILES.get();
+        summaryIntervalSeconds = CFG_SUMMARY_INTERVAL.get();
+        summaryToOps        = CFG_SUMMARY_TO_OPS.get();
+        trackingStaleMs     = CFG_TRACKING_STALE_MS.get();
+        trackingMaxEntries  = CFG_TRACKING_MAX_ENTRIES.get();
+        evictionSlotsPerTick = CFG_EVICTION_SLOTS.get();
+        trackingPersistence = CFG_TRACKING_PERSISTENCE.get();
+        ageSource           = CFG_AGE_SOURCE.get();
+        consolidateStacks   = CFG_CONSOLIDATE.get();
+        mergeCellSize       = CFG_MERGE_CELL.get();
+        mergeBudgetPerCycle = CFG_MERGE_BUDGET.get();
         protectNamedItems   = CFG_PROTECT_NAMED.get();
         playerSafeRadius    = CFG_PLAYER_RADIUS.get();
         filterMode          = CFG_FILTER_MODE.get();
         //filterList          = java.util.List.copyOf(CFG_FILTER_LIST.get());
         filterList          = CFG_FILTER_LIST.get().stream().map(Object::toString).toList();
+        compiledFilter      = CompiledFilter.compile(filterMode, filterList);
+    }
+
+    /** Re-resolve the filter list, e.g. after tags were reloaded. No-op before the first bake. */
+    public static void rebuildFilter() {
+        if (filterList != null) {
+            compiledFilter = CompiledFilter.compile(filterMode, filterList);
+        }
     }
 
     private CleanupConfig() {}
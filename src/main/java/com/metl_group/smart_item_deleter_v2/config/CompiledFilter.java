@@ -0,0 +1,86 @@
+package com.metl_group.smart_item_deleter_v2.config;
+
+import it.unimi.dsi.fastutil.objects.Reference2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.item.Item;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Baked form of {@link CleanupConfig#filterList}.
+ * Plain IDs are resolved once into an identity set of items, "#tag" entries into pre-built {@link TagKey}s.
+ * The per-item verdict is cached, so the hot path is a single identity lookup without allocation.
+ * Not thread-safe: the verdict cache is filled lazily on the server thread.
+ */
+public final class CompiledFilter {
+    private static final byte UNKNOWN = -1;
+    private static final byte NOT_LISTED = 0;
+    private static final byte LISTED = 1;
+
+    private final CleanupConfig.FilterMode mode;
+    private final ReferenceOpenHashSet<Item> items;
+    private final List<TagKey<Item>> tags;
+    private final Reference2ByteOpenHashMap<Item> verdicts = new Reference2ByteOpenHashMap<>();
+
+    private CompiledFilter(CleanupConfig.FilterMode mode, ReferenceOpenHashSet<Item> items, List<TagKey<Item>> tags) {
+        this.mode = mode;
+        this.items = items;
+        this.tags = tags;
+        this.verdicts.defaultReturnValue(UNKNOWN);
+    }
+
+    /** Resolve the raw config entries. Unknown IDs and malformed tags are dropped, exactly as the string matching did. */
+    public static CompiledFilter compile(CleanupConfig.FilterMode mode, List<String> entries) {
+        ReferenceOpenHashSet<Item> items = new ReferenceOpenHashSet<>();
+        List<TagKey<Item>> tags = new ArrayList<>();
+        for (String s : entries) {
+            if (s.startsWith("#")) {
+                ResourceLocation tagId = ResourceLocation.tryParse(s.substring(1));
+                if (tagId != null) {
+                    tags.add(TagKey.create(Registries.ITEM, tagId));
+                }
+            } else {
+                // The old check compared against the full "namespace:path" string, so shorthand like "stone" never matched.
+                ResourceLocation id = ResourceLocation.tryParse(s);
+                if (id != null && id.toString().equals(s) && BuiltInRegistries.ITEM.containsKey(id)) {
+                    items.add(BuiltInRegistries.ITEM.get(id));
+                }
+            }
+        }
+        return new CompiledFilter(mode, items, List.copyOf(tags));
+    }
+
+    /** True if the item is named in the filter list, directly or through one of its tags. */
+    public boolean isListed(Item item) {
+        byte v = verdicts.getByte(item);
+        if (v == UNKNOWN) {
+            v = resolve(item) ? LISTED : NOT_LISTED;
+            verdicts.put(item, v);
+        }
+        return v == LISTED;
+    }
+
+    /** Whether the filter mode allows deleting this item. */
+    public boolean allowsDeletion(Item item) {
+        boolean listed = isListed(item);
+        return switch (mode) {
+            case BLACKLIST -> !listed; // allowed to delete when NOT listed
+            case WHITELIST -> listed;  // allowed to delete when listed
+        };
+    }
+
+    private boolean resolve(Item item) {
+        if (items.contains(item)) return true;
+        if (tags.isEmpty()) return false;
+        var holder = BuiltInRegistries.ITEM.wrapAsHolder(item);
+        for (TagKey<Item> tag : tags) {
+            if (holder.is(tag)) return true;
+        }
+        return false;
+    }
+}
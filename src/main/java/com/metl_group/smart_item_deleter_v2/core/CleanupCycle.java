@@ -0,0 +1,330 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import com.metl_group.smart_item_deleter_v2.api.CleanupPostEvent;
+import com.metl_group.smart_item_deleter_v2.api.CleanupPreEvent;
+import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
+import com.metl_group.smart_item_deleter_v2.persist.TrackedItemsData;
+
+import com.metl_group.smart_item_deleter_v2.core.plan.ChunkHistogram;
+import com.metl_group.smart_item_deleter_v2.core.plan.CleanupPlanner;
+import com.metl_group.smart_item_deleter_v2.core.plan.PlayerIndex;
+import com.metl_group.smart_item_deleter_v2.core.plan.ZoneIndex;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.level.ChunkPos;
+import net.neoforged.neoforge.common.NeoForge;
+import org.slf4j.Logger;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One resumable cleanup cycle for a single level, in three stages:
+ * <ol>
+ *   <li>snapshot (server thread): track every item and copy what the planner needs into an {@link ItemSnapshot};</li>
+ *   <li>plan ({@link PlanningPool}): eligibility, victim order and quota, against a player snapshot;</li>
+ *   <li>apply (server thread, a later tick): consolidate stacks, then re-validate and discard the planned victims.</li>
+ * </ol>
+ * Server-thread phases can stop at a deadline and continue on the next tick from their cursor. Victims are
+ * re-validated right before they are discarded, since items may have been picked up, merged or moved meanwhile.
+ * Other mods see each cycle as one {@link CleanupPreEvent} before the first deletion (with a bulk veto) and one
+ * {@link CleanupPostEvent} at the end.
+ */
+final class CleanupCycle {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    enum Phase { TRACK, PLAN, CONSOLIDATE, DISCARD, DONE }
+
+    // Check the clock once per batch; System.nanoTime() is cheap but not free.
+    private static final int BATCH_MASK = 63;
+
+    private final ServerLevel level;
+    private final long nowMs;
+    private final List<ItemEntity> items;
+    private final int total;
+    private final int threshold;
+    private final TrackedItemsData data;
+    private final boolean nativeAge;
+    private final int dimIndex;
+    private final ItemSnapshot view;
+    private final ChunkHistogram histogram = new ChunkHistogram();
+
+    private CleanupPlanner planner;
+    private CompletableFuture<PlanningPool.Result> pending;
+    // Indices into items/view; order is bounded by CleanupPlanner.victimLimit.
+    private CleanupPlanner.Plan plan = CleanupPlanner.Plan.NONE;
+
+    private Phase phase = Phase.TRACK;
+    private int cursor;
+    private int ops;
+    private int toDelete;
+    private int deleted;
+    private int excess;
+    private int merged;
+    private StackConsolidator consolidator;
+    // Set by CleanupPreEvent listeners, indexed like plan.order(); null when nothing was vetoed.
+    private BitSet vetoed;
+    private int vetoCount;
+    private final Reference2IntOpenHashMap<Item> deletedByItem = new Reference2IntOpenHashMap<>();
+    private final Long2IntOpenHashMap deletedByChunk = new Long2IntOpenHashMap();
+
+    // Instrumentation: server-thread nanos per phase (index 0 = scan, then Phase ordinal + 1), ticks spanned.
+    private final long[] phaseNanos = new long[LevelStats.PHASES.length];
+    private final CleanupCycleEvent event = new CleanupCycleEvent();
+    private int ticks;
+    private long planNanos;
+    private PlayerIndex freshPlayers;
+    private ZoneIndex freshZones;
+
+    private CleanupCycle(ServerLevel level, long nowMs, List<ItemEntity> items, int threshold) {
+        this.level = level;
+        this.nowMs = nowMs;
+        this.items = items;
+        this.total = items.size();
+        this.threshold = threshold;
+        this.data = TrackedItemsData.get(level);
+        this.nativeAge = CleanupConfig.ageSource == CleanupConfig.AgeSource.NATIVE;
+        this.dimIndex = nativeAge ? -1 : data.internDim(level.dimension().location());
+        this.view = new ItemSnapshot(total, CleanupConfig.compiledFilter, TickCostProbe.forConfig(level));
+    }
+
+    /**
+     * Collect the level's items and open a cycle, or return null if the level is not above the threshold.
+     * Only proceeding above the threshold also prevents "aging" while under it.
+     */
+    static CleanupCycle start(ServerLevel level, long nowMs) {
+        long t0 = System.nanoTime();
+        int threshold = CleanupConfig.entityCountThreshold;
+        List<ItemEntity> items;
+        if (CleanupConfig.itemSource == CleanupConfig.ItemSource.EVENTS) {
+            LiveItemRegistry registry = LiveItemRegistry.of(level);
+            if (registry.count() <= threshold) return null;
+            items = registry.snapshot();
+        } else {
+            items = LiveItemRegistry.scanAll(level);
+        }
+        if (items.size() <= threshold) return null;
+        CleanupCycle cycle = new CleanupCycle(level, nowMs, items, threshold);
+        cycle.event.begin();
+        cycle.phaseNanos[0] = System.nanoTime() - t0;
+        return cycle;
+    }
+
+    ServerLevel level() {
+        return level;
+    }
+
+    boolean isDone() {
+        return phase == Phase.DONE;
+    }
+
+    /**
+     * Advance until done or until {@code deadlineNanos} passes. At least one batch is processed per call so
+     * a cycle can never starve behind other levels; a cycle waiting for its plan just returns.
+     * Pass {@link Long#MAX_VALUE} to run to completion (this waits for the plan).
+     * Returns true once the cycle has finished.
+     */
+    boolean step(long deadlineNanos) {
+        if (phase == Phase.DONE) return true;
+        ops = 0;
+        ticks++;
+        while (phase != Phase.DONE) {
+            Phase current = phase;
+            long t0 = System.nanoTime();
+            boolean paused = switch (current) {
+                case TRACK -> track(deadlineNanos);
+                case PLAN -> awaitPlan(deadlineNanos);
+                case CONSOLIDATE -> consolidate(deadlineNanos);
+                case DISCARD -> discard(deadlineNanos);
+                case DONE -> false;
+            };
+            phaseNanos[current.ordinal() + 1] += System.nanoTime() - t0;
+            if (paused) return false;
+        }
+        finish();
+        return true;
+    }
+
+    /**
+     * Update tracking (firstSeen/lastSeen) only while above threshold, and snapshot each item for the planner.
+     * With ageSource NATIVE the age comes from the entity and the tracking table is only read, see
+     * {@link PolicyEngine#nativeFirstSeenMs}.
+     */
+    private boolean track(long deadline) {
+        for (; cursor < items.size(); cursor++) {
+            if (outOfTime(deadline)) return true;
+            ItemEntity ie = items.get(cursor);
+            long first = nativeAge
+                    ? PolicyEngine.nativeFirstSeenMs(ie, nowMs, data)
+                    : data.touch(ie.getUUID(), dimIndex, ie.getX(), ie.getY(), ie.getZ(), ie.getItem().getItem(), nowMs);
+            view.set(cursor, ie, first);
+            histogram.add(view.chunk(cursor));
+        }
+        LevelStats.of(level.dimension()).recordScan(histogram);
+
+        // The snapshot, the player positions and the histogram are not touched again until the plan is back.
+        planner = PolicyEngine.planner(level, view.filter());
+        pending = PlanningPool.plan(planner, view, nowMs, currentCount(0), histogram);
+        next(Phase.PLAN);
+        return false;
+    }
+
+    // Wait for the worker without blocking the tick, unless the cycle is forced to completion.
+    private boolean awaitPlan(long deadline) {
+        if (!pending.isDone() && deadline != Long.MAX_VALUE) return true;
+        try {
+            PlanningPool.Result result = pending.join();
+            plan = result.plan();
+            planNanos = result.nanos();
+        } catch (RuntimeException ex) {
+            LOGGER.error("Cleanup planning failed for {}", level.dimension().location(), ex);
+            next(Phase.DONE);
+            return false;
+        }
+        if (CleanupConfig.consolidateStacks) {
+            next(Phase.CONSOLIDATE);
+        } else {
+            beginDiscard();
+        }
+        return false;
+    }
+
+    /**
+     * Merge identical eligible drops per cell before anything is deleted. Every entity merged away counts
+     * toward the excess, so fewer items have to be deleted. Only eligible items take part, and each is re-checked
+     * like a victim (name, zones and player radius against fresh indexes) before it is merged away.
+     */
+    private boolean consolidate(long deadline) {
+        if (consolidator == null) {
+            consolidator = new StackConsolidator(CleanupConfig.mergeCellSize, CleanupConfig.mergeBudgetPerCycle);
+            refreshProtection();
+        }
+        int[] eligible = plan.eligible();
+        for (; cursor < eligible.length && !consolidator.exhausted(); cursor++) {
+            if (outOfTime(deadline)) return true;
+            ItemEntity ie = items.get(eligible[cursor]);
+            if (!isStillDeletable(ie)) continue;
+            if (consolidator.offer(ie)) {
+                forget(ie);
+            }
+        }
+        merged = consolidator.merged();
+        beginDiscard();
+        return false;
+    }
+
+    /**
+     * Final counts against the world as it is now:
+     *  - "excess": how far we are over the threshold (live count if we have one, the cycle spans ticks)
+     *  - "quota": percentage of the eligible items that were not merged away
+     *  - final deletion count: min(excess, quota)
+     */
+    private void beginDiscard() {
+        excess = planner.excess(currentCount(merged));
+        toDelete = Math.min(excess, planner.quota(plan.eligible().length - merged));
+        refreshProtection();
+        if (toDelete > 0 && plan.order().length > 0 && !postPreEvent()) {
+            next(Phase.DONE);
+            return;
+        }
+        next(Phase.DISCARD);
+    }
+
+    /** One pre-event per cycle over the whole planned order. False if a listener cancelled the deletion. */
+    private boolean postPreEvent() {
+        CleanupPreEvent pre = NeoForge.EVENT_BUS.post(
+                new CleanupPreEvent(level, items, plan.order(), view::firstSeenMs, toDelete));
+        if (pre.isCanceled()) return false;
+        if (pre.getVetoCount() > 0) vetoed = pre.getVetoMask();
+        return true;
+    }
+
+    // Players may have moved and zones may have been added since the snapshot; re-check against fresh ones.
+    private void refreshProtection() {
+        freshPlayers = PolicyEngine.playerIndex(level);
+        freshZones = PolicyEngine.zoneIndex(level);
+    }
+
+    private boolean discard(long deadline) {
+        int[] order = plan.order();
+        for (; cursor < order.length && deleted < toDelete; cursor++) {
+            if (outOfTime(deadline)) return true;
+            if (vetoed != null && vetoed.get(cursor)) {
+                vetoCount++;
+                continue;
+            }
+            ItemEntity ie = items.get(order[cursor]);
+            if (!isStillDeletable(ie)) continue;
+            deletedByItem.addTo(ie.getItem().getItem(), 1);
+            deletedByChunk.addTo(ChunkPos.asLong(
+                    SectionPos.blockToSectionCoord(ie.getBlockX()), SectionPos.blockToSectionCoord(ie.getBlockZ())), 1);
+            ie.discard();
+            forget(ie);
+            deleted++;
+        }
+        next(Phase.DONE);
+        return false;
+    }
+
+    // In NATIVE mode the table only holds leftovers from TRACKED; skip the lookup once they are gone.
+    private void forget(ItemEntity ie) {
+        if (!nativeAge || data.size() > 0) data.remove(ie.getUUID());
+    }
+
+    private int currentCount(int mergedSoFar) {
+        return (CleanupConfig.itemSource == CleanupConfig.ItemSource.EVENTS)
+                ? LiveItemRegistry.of(level).count()
+                : total - mergedSoFar;
+    }
+
+    private void finish() {
+        LevelStats.of(level.dimension()).recordCycle(phaseNanos, planNanos, deleted, merged);
+        int eligible = plan.eligible().length;
+        event.end();
+        if (event.shouldCommit()) {
+            event.dimension = level.dimension().location().toString();
+            event.items = total;
+            event.eligible = eligible;
+            event.merged = merged;
+            event.deleted = deleted;
+            event.ticks = ticks;
+            event.scanNanos = phaseNanos[0];
+            event.trackNanos = phaseNanos[Phase.TRACK.ordinal() + 1];
+            event.planNanos = planNanos;
+            event.consolidateNanos = phaseNanos[Phase.CONSOLIDATE.ordinal() + 1];
+            event.discardNanos = phaseNanos[Phase.DISCARD.ordinal() + 1];
+            event.commit();
+        }
+        NeoForge.EVENT_BUS.post(new CleanupPostEvent(level, total, deleted, merged, vetoCount,
+                deletedByItem, deletedByChunk));
+        long serverNanos = 0;
+        for (long n : phaseNanos) serverNanos += n;
+        CycleJournal.record(level.dimension().location(), total, eligible, merged, deleted, vetoCount,
+                threshold, excess, planner.settings().minAgeMs(),
+                Math.max(0, Math.min(100, planner.settings().deletePercentage())), ticks, serverNanos, planNanos);
+    }
+
+    // Picked up, merged, despawned or changed dimension since it was planned?
+    private boolean isStillDeletable(ItemEntity ie) {
+        if (ie.isRemoved() || !ie.isAlive()) return false;
+        if (ie.level() != level || ie.getItem().isEmpty()) return false;
+        if (PolicyEngine.isProtectedByName(ie)) return false;
+        if (PolicyEngine.isProtectedByZone(freshZones, ie)) return false;
+        return !PolicyEngine.isProtectedByPlayerRadius(freshPlayers, ie);
+    }
+
+    private void next(Phase p) {
+        phase = p;
+        cursor = 0;
+    }
+
+    private boolean outOfTime(long deadline) {
+        return (++ops & BATCH_MASK) == 0 && System.nanoTime() >= deadline;
+    }
+}
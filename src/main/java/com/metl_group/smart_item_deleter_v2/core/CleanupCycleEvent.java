@@ -0,0 +1,54 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event per finished cleanup cycle. Its duration is the wall time from start to finish (possibly several
+ * ticks); the phase fields hold the time actually spent on the server thread, except planning, which runs
+ * on the planning pool.
+ */
+@Name("smart_item_deleter_v2.CleanupCycle")
+@Label("Item Cleanup Cycle")
+@Category({"Smart Item Deleter", "Cleanup"})
+@Description("One item cleanup cycle for a level")
+@StackTrace(false)
+final class CleanupCycleEvent extends Event {
+    @Label("Dimension")
+    String dimension;
+
+    @Label("Items")
+    int items;
+
+    @Label("Eligible")
+    int eligible;
+
+    @Label("Merged")
+    int merged;
+
+    @Label("Deleted")
+    int deleted;
+
+    @Label("Ticks")
+    int ticks;
+
+    @Label("Scan") @Timespan(Timespan.NANOSECONDS)
+    long scanNanos;
+
+    @Label("Tracking") @Timespan(Timespan.NANOSECONDS)
+    long trackNanos;
+
+    @Label("Planning (worker)") @Timespan(Timespan.NANOSECONDS)
+    long planNanos;
+
+    @Label("Consolidate") @Timespan(Timespan.NANOSECONDS)
+    long consolidateNanos;
+
+    @Label("Discard") @Timespan(Timespan.NANOSECONDS)
+    long discardNanos;
+}
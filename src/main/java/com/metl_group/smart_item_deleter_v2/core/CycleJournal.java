@@ -0,0 +1,317 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import com.metl_group.smart_item_deleter_v2.ModMain;
+import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
+import com.mojang.logging.LogUtils;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.storage.LevelResource;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.server.ServerStartedEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import org.slf4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Results of finished cycles, reported off the server thread. {@link #record} only copies a cycle's numbers into a
+ * fixed ring of primitive slots (single producer: the server thread; single consumer: the journal thread), so the
+ * server thread never formats text or touches a file. Once a second the journal thread drains the ring, appends one
+ * JSON line per cycle to {@code <world>/smart_item_deleter_v2/history/cycles-<date>-<n>.ndjson} (new file per day
+ * and whenever historyMaxFileMib is reached, oldest deleted beyond historyMaxFiles) and adds the cycle to the
+ * running summary. Every summaryIntervalSeconds one line covering all dimensions goes to the console, and to
+ * operators in chat if summaryToOps is set.
+ * <p>
+ * If the journal thread falls behind by a full ring, new results are dropped and counted instead of blocking.
+ */
+@EventBusSubscriber(modid = ModMain.MOD_ID)
+public final class CycleJournal {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final int CAPACITY = 1024; // power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final long DRAIN_INTERVAL_MS = 1_000;
+    private static final int OP_PERMISSION_LEVEL = 2;
+
+    // Slot layout, CAPACITY slots each.
+    private static final int L_TIME = 0, L_MIN_AGE = 1, L_SERVER_NANOS = 2, L_PLAN_NANOS = 3, LONGS = 4;
+    private static final int I_ITEMS = 0, I_ELIGIBLE = 1, I_MERGED = 2, I_DELETED = 3, I_VETOED = 4,
+            I_THRESHOLD = 5, I_EXCESS = 6, I_PCT = 7, I_TICKS = 8, INTS = 9;
+
+    private static final long[] LONG_SLOTS = new long[CAPACITY * LONGS];
+    private static final int[] INT_SLOTS = new int[CAPACITY * INTS];
+    private static final ResourceLocation[] DIM_SLOTS = new ResourceLocation[CAPACITY];
+    // head: next slot the server thread writes; tail: next slot the journal thread reads.
+    private static final AtomicLong HEAD = new AtomicLong();
+    private static final AtomicLong TAIL = new AtomicLong();
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    private static final ScheduledExecutorService WORKER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "smart_item_deleter_v2-journal");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Server thread.
+    private static ScheduledFuture<?> drainTask;
+    // Journal thread only; start/stop hand them over through the executor.
+    private static MinecraftServer server;
+    private static Path dir;
+    private static BufferedWriter out;
+    private static LocalDate outDay;
+    private static long outBytes;
+    private static long lastSummaryMs;
+    private static long reportedDropped;
+    // Per dimension since the last summary: cycles, deleted, merged.
+    private static final Map<ResourceLocation, long[]> PENDING = new LinkedHashMap<>();
+    private static final StringBuilder LINE = new StringBuilder(256);
+
+    private CycleJournal() {}
+
+    @SubscribeEvent
+    public static void onServerStarted(final ServerStartedEvent e) {
+        MinecraftServer s = e.getServer();
+        Path historyDir = s.getWorldPath(LevelResource.ROOT).resolve(ModMain.MOD_ID).resolve("history");
+        WORKER.execute(() -> {
+            server = s;
+            dir = historyDir;
+            lastSummaryMs = System.currentTimeMillis();
+            TAIL.set(HEAD.get()); // nothing from a previous server in this JVM
+        });
+        drainTask = WORKER.scheduleWithFixedDelay(CycleJournal::drain,
+                DRAIN_INTERVAL_MS, DRAIN_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(final ServerStoppedEvent e) {
+        if (drainTask != null) {
+            drainTask.cancel(false);
+            drainTask = null;
+        }
+        // Last cycles and the summary they belong to, then release the file; chat is gone by now.
+        try {
+            WORKER.submit(() -> {
+                drain();
+                summarize(System.currentTimeMillis(), false);
+                close();
+                server = null;
+                dir = null;
+            }).get(10, TimeUnit.SECONDS);
+        } catch (Exception ex) {
+            LOGGER.warn("Cleanup journal did not drain", ex);
+        }
+    }
+
+    /** Queue one finished cycle. Server thread only; no allocation, formatting or I/O. */
+    static void record(ResourceLocation dimension, int items, int eligible, int merged, int deleted, int vetoed,
+                       int threshold, int excess, long minAgeMs, int pct, int ticks, long serverNanos,
+                       long planNanos) {
+        long h = HEAD.get();
+        if (h - TAIL.get() >= CAPACITY) {
+            DROPPED.incrementAndGet();
+            return;
+        }
+        int slot = (int) (h & MASK);
+        int l = slot * LONGS, i = slot * INTS;
+        LONG_SLOTS[l + L_TIME] = System.currentTimeMillis();
+        LONG_SLOTS[l + L_MIN_AGE] = minAgeMs;
+        LONG_SLOTS[l + L_SERVER_NANOS] = serverNanos;
+        LONG_SLOTS[l + L_PLAN_NANOS] = planNanos;
+        INT_SLOTS[i + I_ITEMS] = items;
+        INT_SLOTS[i + I_ELIGIBLE] = eligible;
+        INT_SLOTS[i + I_MERGED] = merged;
+        INT_SLOTS[i + I_DELETED] = deleted;
+        INT_SLOTS[i + I_VETOED] = vetoed;
+        INT_SLOTS[i + I_THRESHOLD] = threshold;
+        INT_SLOTS[i + I_EXCESS] = excess;
+        INT_SLOTS[i + I_PCT] = pct;
+        INT_SLOTS[i + I_TICKS] = ticks;
+        DIM_SLOTS[slot] = dimension;
+        HEAD.lazySet(h + 1); // publishes the slot
+    }
+
+    // Scheduled with a fixed delay: an exception escaping here would silently cancel every later drain.
+    private static void drain() {
+        try {
+            drainOnce();
+        } catch (RuntimeException ex) {
+            LOGGER.error("Cleanup journal drain failed", ex);
+            close();
+        }
+    }
+
+    private static void drainOnce() {
+        if (dir == null) return;
+        long nowMs = System.currentTimeMillis();
+        long t = TAIL.get();
+        long h = HEAD.get();
+        boolean history = CleanupConfig.historyEnabled;
+        for (; t < h; t++) {
+            int slot = (int) (t & MASK);
+            int l = slot * LONGS, i = slot * INTS;
+            ResourceLocation dim = DIM_SLOTS[slot];
+            DIM_SLOTS[slot] = null;
+            long[] sums = PENDING.computeIfAbsent(dim, k -> new long[3]);
+            sums[0]++;
+            sums[1] += INT_SLOTS[i + I_DELETED];
+            sums[2] += INT_SLOTS[i + I_MERGED];
+            if (history) history = append(dim, l, i);
+            TAIL.lazySet(t + 1); // frees the slot; a failure further on does not count it twice
+        }
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException ex) {
+                LOGGER.error("Failed to write cleanup history", ex);
+                close();
+            }
+        }
+
+        long dropped = DROPPED.get();
+        if (dropped != reportedDropped) {
+            LOGGER.warn("Cleanup journal fell behind; {} cycle results dropped so far", dropped);
+            reportedDropped = dropped;
+        }
+        int interval = CleanupConfig.summaryIntervalSeconds;
+        if (interval > 0 && nowMs - lastSummaryMs >= interval * 1_000L) {
+            summarize(nowMs, CleanupConfig.summaryToOps);
+        }
+    }
+
+    // Dimension ids are [a-z0-9_.-/:] only, so nothing needs escaping. False if the file could not be written;
+    // the rest of this batch is then skipped and the next drain opens the file again.
+    private static boolean append(ResourceLocation dim, int l, int i) {
+        long timeMs = LONG_SLOTS[l + L_TIME];
+        StringBuilder sb = LINE;
+        sb.setLength(0);
+        sb.append("{\"time\":\"").append(Instant.ofEpochMilli(timeMs)).append('"')
+                .append(",\"dimension\":\"").append(dim).append('"')
+                .append(",\"items\":").append(INT_SLOTS[i + I_ITEMS])
+                .append(",\"eligible\":").append(INT_SLOTS[i + I_ELIGIBLE])
+                .append(",\"merged\":").append(INT_SLOTS[i + I_MERGED])
+                .append(",\"deleted\":").append(INT_SLOTS[i + I_DELETED])
+                .append(",\"vetoed\":").append(INT_SLOTS[i + I_VETOED])
+                .append(",\"threshold\":").append(INT_SLOTS[i + I_THRESHOLD])
+                .append(",\"excess\":").append(INT_SLOTS[i + I_EXCESS])
+                .append(",\"minAgeMs\":").append(LONG_SLOTS[l + L_MIN_AGE])
+                .append(",\"pct\":").append(INT_SLOTS[i + I_PCT])
+                .append(",\"ticks\":").append(INT_SLOTS[i + I_TICKS])
+                .append(",\"serverNanos\":").append(LONG_SLOTS[l + L_SERVER_NANOS])
+                .append(",\"planNanos\":").append(LONG_SLOTS[l + L_PLAN_NANOS])
+                .append("}\n");
+        try {
+            writerFor(LocalDate.now(), sb.length()).append(sb);
+        } catch (IOException ex) {
+            LOGGER.error("Failed to write cleanup history to {}", dir, ex);
+            close();
+            return false;
+        }
+        outBytes += sb.length(); // ASCII only
+        return true;
+    }
+
+    // The open file, or a new one when the day changed or this line would exceed historyMaxFileMib.
+    private static BufferedWriter writerFor(LocalDate day, int lineBytes) throws IOException {
+        long maxBytes = CleanupConfig.historyMaxFileMib * 1024L * 1024L;
+        if (out != null && day.equals(outDay) && outBytes + lineBytes <= maxBytes) return out;
+        boolean rotate = out != null && day.equals(outDay);
+        close();
+        Files.createDirectories(dir);
+        String prefix = "cycles-" + day + "-";
+        int n = 0;
+        Path file;
+        while (true) {
+            file = dir.resolve(prefix + n + ".ndjson");
+            if (!Files.exists(file)) break;
+            // Append to today's last file after a restart, unless it is full.
+            if (!rotate && !Files.exists(dir.resolve(prefix + (n + 1) + ".ndjson"))
+                    && Files.size(file) + lineBytes <= maxBytes) break;
+            n++;
+        }
+        out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        outDay = day;
+        outBytes = Files.size(file);
+        prune();
+        return out;
+    }
+
+    // Best effort: a directory that cannot be listed or cleaned up must not stop the history itself.
+    private static void prune() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "cycles-*.ndjson")) {
+            for (Path p : ds) files.add(p);
+            int excess = files.size() - CleanupConfig.historyMaxFiles;
+            if (excess <= 0) return;
+            files.sort(Comparator.comparingLong(p -> p.toFile().lastModified()));
+            for (int k = 0; k < excess; k++) Files.deleteIfExists(files.get(k));
+        } catch (IOException | DirectoryIteratorException ex) {
+            LOGGER.warn("Failed to prune cleanup history in {}", dir, ex);
+        }
+    }
+
+    /** One line for everything since the last summary; nothing if no cycle deleted or merged anything. */
+    private static void summarize(long nowMs, boolean toOps) {
+        long seconds = Math.max(1, (nowMs - lastSummaryMs + 500) / 1_000);
+        lastSummaryMs = nowMs;
+        long cycles = 0, deleted = 0, merged = 0;
+        StringBuilder perDim = new StringBuilder();
+        for (Map.Entry<ResourceLocation, long[]> e : PENDING.entrySet()) {
+            long[] sums = e.getValue();
+            cycles += sums[0];
+            deleted += sums[1];
+            merged += sums[2];
+            if (sums[1] == 0 && sums[2] == 0) continue;
+            if (!perDim.isEmpty()) perDim.append(", ");
+            perDim.append(e.getKey()).append(' ').append(sums[1]).append('/').append(sums[2]);
+        }
+        PENDING.clear();
+        if (deleted == 0 && merged == 0) return;
+
+        String text = "[smart_item_deleter_v2] Cleanup in the last " + seconds + "s: removed " + deleted
+                + ", merged " + merged + " in " + cycles + " cycles (removed/merged: " + perDim + ")";
+        LOGGER.info(text);
+        MinecraftServer s = server;
+        if (toOps && s != null) {
+            Component message = Component.literal(text);
+            s.execute(() -> {
+                for (ServerPlayer p : s.getPlayerList().getPlayers()) {
+                    if (p.hasPermissions(OP_PERMISSION_LEVEL)) p.sendSystemMessage(message);
+                }
+            });
+        }
+    }
+
+    private static void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to close cleanup history file", ex);
+        }
+        out = null;
+        outDay = null;
+    }
+}
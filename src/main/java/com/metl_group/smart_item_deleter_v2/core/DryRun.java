@@ -0,0 +1,78 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
+import com.metl_group.smart_item_deleter_v2.core.plan.ChunkHistogram;
+import com.metl_group.smart_item_deleter_v2.core.plan.CleanupPlanner;
+import com.metl_group.smart_item_deleter_v2.persist.TrackedItemsData;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.Mth;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.level.Level;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * What a cleanup cycle would delete in a level right now, planned by the same {@link CleanupPlanner} as a real
+ * cycle. Nothing is changed: the snapshot reads firstSeen without touching the tracking table, and the
+ * planning runs on the {@link PlanningPool}. Stack merging is not simulated, so a real cycle may delete fewer.
+ *
+ * @param victimItemIds   item registry ids of the victims, most frequent first
+ * @param victimCounts    victims per entry of {@code victimItemIds}
+ * @param firstVictims    {@code BlockPos#asLong} of the first few victims in deletion order
+ */
+public record DryRun(ResourceKey<Level> dimension, int items, int eligible, int excess, int quota, int toDelete,
+                     int[] victimItemIds, int[] victimCounts, long[] firstVictims) {
+    private static final int FIRST_VICTIMS = 5;
+
+    /** Snapshot the level on the server thread and plan it on the pool; the future completes off-thread. */
+    public static CompletableFuture<DryRun> of(ServerLevel level, long nowMs) {
+        ResourceKey<Level> dim = level.dimension();
+        List<ItemEntity> items = CleanupConfig.itemSource == CleanupConfig.ItemSource.EVENTS
+                ? LiveItemRegistry.of(level).snapshot()
+                : LiveItemRegistry.scanAll(level);
+        int total = items.size();
+        if (total <= CleanupConfig.entityCountThreshold) {
+            return CompletableFuture.completedFuture(
+                    new DryRun(dim, total, 0, 0, 0, 0, new int[0], new int[0], new long[0]));
+        }
+
+        TrackedItemsData data = TrackedItemsData.get(level);
+        boolean nativeAge = CleanupConfig.ageSource == CleanupConfig.AgeSource.NATIVE;
+        ItemSnapshot view = new ItemSnapshot(total, CleanupConfig.compiledFilter, TickCostProbe.forConfig(level));
+        ChunkHistogram histogram = new ChunkHistogram();
+        for (int i = 0; i < total; i++) {
+            ItemEntity ie = items.get(i);
+            view.set(i, ie, nativeAge
+                    ? PolicyEngine.nativeFirstSeenMs(ie, nowMs, data)
+                    : data.firstSeenMs(ie.getUUID(), nowMs));
+            histogram.add(view.chunk(i));
+        }
+        CleanupPlanner planner = PolicyEngine.planner(level, view.filter());
+        return PlanningPool.plan(planner, view, nowMs, total, histogram)
+                .thenApply(result -> summarize(dim, view, result.plan()));
+    }
+
+    private static DryRun summarize(ResourceKey<Level> dim, ItemSnapshot view, CleanupPlanner.Plan plan) {
+        int victims = Math.min(plan.toDelete(), plan.order().length);
+        Int2IntOpenHashMap perItem = new Int2IntOpenHashMap();
+        for (int k = 0; k < victims; k++) perItem.addTo(view.itemId(plan.order()[k]), 1);
+
+        int[] ids = perItem.keySet().toIntArray();
+        IntArrays.quickSort(ids, (a, b) -> Integer.compare(perItem.get(b), perItem.get(a)));
+        int[] counts = new int[ids.length];
+        for (int j = 0; j < ids.length; j++) counts[j] = perItem.get(ids[j]);
+
+        long[] first = new long[Math.min(FIRST_VICTIMS, victims)];
+        for (int k = 0; k < first.length; k++) {
+            int i = plan.order()[k];
+            first[k] = BlockPos.asLong(Mth.floor(view.x(i)), Mth.floor(view.y(i)), Mth.floor(view.z(i)));
+        }
+        return new DryRun(dim, view.size(), plan.eligible().length, plan.excess(), plan.quota(), plan.toDelete(),
+                ids, counts, first);
+    }
+}
@@ -2,25 +2,32 @@ package com.metl_group.smart_item_deleter_v2.core;
 
 import com.metl_group.smart_item_deleter_v2.ModMain;
 import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
-import com.metl_group.smart_item_deleter_v2.persist.TrackedItem;
 import com.metl_group.smart_item_deleter_v2.persist.TrackedItemsData;
 
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
 import net.neoforged.neoforge.event.tick.ServerTickEvent;
 
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.item.ItemEntity;
-import net.minecraft.world.phys.AABB;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @EventBusSubscriber(modid = ModMain.MOD_ID)
 public final class ItemCleanupSystem {
-    // Next scheduled server tick to run the cleanup; replaces fixed modulo logic.
-    private static long nextRunTick = 0L;
+    // Per-level schedule: next run, adaptive interval, growth rate, reconcile and threshold-crossing state.
+    private static final Map<ResourceKey<Level>, LevelSchedule> SCHEDULES = new HashMap<>();
+    // Cycles that ran out of budget and resume on the next tick.
+    private static final Map<ResourceKey<Level>, CleanupCycle> ACTIVE = new LinkedHashMap<>();
 
     private ItemCleanupSystem(){}
 
@@ -28,41 +35,91 @@ public final class ItemCleanupSystem {
     public static void onServerTick(final ServerTickEvent.Post e) {
         final MinecraftServer server = e.getServer();
         final long nowTick = server.getTickCount();
+        final long nowMs = nowTick * 50L; // ms approx.
+        final double mspt = server.getAverageTickTimeNanos() / 1_000_000.0;
+        final int threshold = CleanupConfig.entityCountThreshold;
+        final boolean events = CleanupConfig.itemSource == CleanupConfig.ItemSource.EVENTS;
 
-        // Initialize schedule on first tick
-        if (nextRunTick == 0L) {
-            nextRunTick = nowTick + computeDelayTicks();
-            return;
-        }
-
-        // Not yet time to run
-        if (nowTick < nextRunTick) return;
+        sweepTracking(server, nowMs);
 
-        // Run once for all levels
-        final long nowMs = nowTick * 50L; // ms approx.
         for (ServerLevel level : server.getAllLevels()) {
-            runCycle(level, nowMs);
+            LevelSchedule s = SCHEDULES.computeIfAbsent(level.dimension(), k -> new LevelSchedule(nowTick, SCHEDULES.size()));
+            LiveItemRegistry registry = LiveItemRegistry.of(level);
+            if (events) {
+                reconcileIfDue(level, registry, s, nowTick);
+            }
+            int count = registry.count();
+            s.sample(nowTick, count);
+
+            if (events) {
+                // The live count makes the threshold check free; below it nothing is scanned at all.
+                boolean above = count > threshold;
+                boolean crossed = above && !s.wasAbove;
+                s.wasAbove = above;
+                if (!above) {
+                    // Nothing to scan, but keep the schedule moving so the interval relaxes like in SCAN mode.
+                    if (s.isDue(nowTick)) s.reschedule(nowTick, count, threshold, mspt);
+                    continue;
+                }
+                if (!(crossed && CleanupConfig.triggerOnThreshold) && !s.isDue(nowTick)) continue;
+            } else if (!s.isDue(nowTick)) {
+                continue;
+            }
+
+            // Starts the cycle (unless one is still running); the work itself is spread over the following ticks
+            startCycle(level, nowMs);
+            s.reschedule(nowTick, count, threshold, mspt);
         }
+        stepActive();
+    }
+
+    /** Public view of a level's schedule for {@code /cleanup stats}; null before the level's first tick. */
+    public static LevelSchedule schedule(ServerLevel level) {
+        return SCHEDULES.get(level.dimension());
+    }
 
-        // Schedule next run with slight jitter to avoid synchronized spikes with other mods
-        nextRunTick = nowTick + computeDelayTicks();
+    // Safety net for the event-fed registry; the first pass also seeds items loaded before it existed.
+    private static void reconcileIfDue(ServerLevel level, LiveItemRegistry registry, LevelSchedule s, long nowTick) {
+        final int reconcileEvery = CleanupConfig.reconcileIntervalTicks;
+        if (reconcileEvery > 0 && nowTick >= s.nextReconcileTick) {
+            registry.reconcile(level);
+            s.nextReconcileTick = nowTick + reconcileEvery;
+        }
     }
 
     /**
-     * Computes the delay until the next run in ticks: base +/- jitter (clamped to >= 1).
-     * Jitter is fixed to +/- 2 ticks to spread load slightly without affecting responsiveness.
+     * Amortized eviction: every tick each level's tracking table is swept a few slots further. Rows are dropped
+     * when stale, or when their last-known chunk has entities loaded and the UUID no longer resolves to a live item
+     * (despawned, picked up, burnt, hoppered). The capacity cap is enforced afterwards.
      */
-    private static int computeDelayTicks() {
-        int base = Math.max(1, CleanupConfig.scanIntervalTicks);
-        // keep jitter small and safe
-        int jitter = Math.min(2, Math.max(0, base - 1));
-        int offset = java.util.concurrent.ThreadLocalRandom.current().nextInt(-jitter, jitter + 1);
-        int delay = base + offset;
-        return Math.max(1, delay);
+    private static void sweepTracking(MinecraftServer server, long nowMs) {
+        final int slots = CleanupConfig.evictionSlotsPerTick;
+        for (ServerLevel level : server.getAllLevels()) {
+            TrackedItemsData data = TrackedItemsData.get(level);
+            if (data.size() == 0) continue;
+            if (slots > 0) {
+                data.sweep(nowMs, CleanupConfig.trackingStaleMs, slots, (id, blockPos) -> {
+                    Entity entity = level.getEntity(id);
+                    if (entity != null) return entity.isRemoved() || !(entity instanceof ItemEntity);
+                    return level.areEntitiesLoaded(ChunkPos.asLong(BlockPos.getX(blockPos) >> 4, BlockPos.getZ(blockPos) >> 4));
+                });
+            }
+            data.enforceCapacity(CleanupConfig.trackingMaxEntries);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(final ServerStoppedEvent e) {
+        SCHEDULES.clear();
+        ACTIVE.clear();
+        LevelStats.clear();
+        // The final world save has already queued its tracking files; make sure they land before the JVM exits.
+        TrackedItemsData.flushPendingWrites();
     }
 
     /**
-     * Runs a single cleanup cycle for the given level.
+     * Runs a single cleanup cycle for the given level to completion, ignoring the per-tick budget.
+     * Used by {@code /cleanup now}; a budgeted cycle already in progress for the level is dropped.
      * Behavior:
      *  - Only act if the total item count exceeds the threshold.
      *  - Track items (firstSeen/lastSeen) only when above threshold.
@@ -71,93 +128,33 @@ public final class ItemCleanupSystem {
      *  - Delete up to min(excess, percentage-of-eligible).
      */
     public static void runCycle(ServerLevel level, long nowMs) {
-        List<ItemEntity> items = allItems(level);
-
-        // Only proceed if we exceed the threshold. This also prevents "aging" while under threshold.
-        int total = items.size();
-        int threshold = CleanupConfig.entityCountThreshold;
-        if (total <= threshold) {
-            return;
-        }
-
-        // Persistent tracking state
-        TrackedItemsData data = TrackedItemsData.get(level);
-
-        // Update tracking (firstSeen/lastSeen) only while above threshold.
-        for (ItemEntity ie : items) {
-            UUID id = ie.getUUID();
-            TrackedItem old = data.map().get(id);
-            String key = PolicyEngine.itemKey(ie.getItem());
-            TrackedItem nu = (old == null)
-                    ? new TrackedItem(id, level.dimension().location(), ie.position(), key, nowMs, nowMs)
-                    : new TrackedItem(id, old.dimension(), ie.position(), key, old.firstSeenMs(), nowMs);
-            data.putOrUpdate(nu);
-        }
-
-        // Build eligible list: old enough + matches filter policy
-        var eligible = items.stream()
-                .filter(ie -> {
-                    TrackedItem ti = data.map().get(ie.getUUID());
-                    long firstSeen = (ti != null ? ti.firstSeenMs() : nowMs);
-                    return (nowMs - firstSeen) >= CleanupConfig.minItemAgeMs;
-                })
-                .filter(PolicyEngine.filterPredicate(level))
-                .sorted(Comparator.comparingLong((ItemEntity ie) -> {
-                    TrackedItem ti = data.map().get(ie.getUUID());
-                    return (ti != null ? ti.firstSeenMs() : nowMs);
-                }))
-                .collect(Collectors.toCollection(ArrayList::new));
-
-        // Sort oldest first (ascending by firstSeenMs) so that the newest items remain safe
-
-        // Determine deletion counts:
-        //  - "excess": how far we are over the threshold
-        //  - "quota": percentage of eligible items we are allowed to delete
-        //  - final deletion count: min(excess, quota)
-        int excess = Math.max(0, total - threshold);
-        int pct = Math.max(0, Math.min(100, CleanupConfig.deletePercentage));
-        int quota = (int) Math.floor(eligible.size() * (pct / 100.0));
-        int toDelete = Math.min(excess, quota);
-
-        int deleted = 0;
-        for (int i = 0; i < eligible.size() && deleted < toDelete; i++) {
-            ItemEntity ie = eligible.get(i);
-            if (!ie.isRemoved() && ie.isAlive()) {
-                ie.discard();
-                data.remove(ie.getUUID());
-                deleted++;
-            }
-        }
-
-        if (deleted > 0) {
-            ModLogger.info(level,
-                    deleted, eligible.size(), total, threshold, CleanupConfig.minItemAgeMs, pct, excess);
+        ACTIVE.remove(level.dimension());
+        CleanupCycle cycle = CleanupCycle.start(level, nowMs);
+        if (cycle != null) {
+            cycle.step(Long.MAX_VALUE);
         }
     }
 
-    // Collect all item entities in the level. Bounding box is expanded beyond world border to be safe.
-    private static List<ItemEntity> allItems(ServerLevel level) {
-        AABB bb = new AABB(
-                level.getWorldBorder().getMinX() - 1_000, level.getMinBuildHeight(),
-                level.getWorldBorder().getMinZ() - 1_000,
-                level.getWorldBorder().getMaxX() + 1_000, level.getMaxBuildHeight(),
-                level.getWorldBorder().getMaxZ() + 1_000
-        );
-        return level.getEntitiesOfClass(ItemEntity.class, bb);
+    /** Open a budgeted cycle for the level unless one is still running. */
+    private static void startCycle(ServerLevel level, long nowMs) {
+        if (ACTIVE.containsKey(level.dimension())) return;
+        CleanupCycle cycle = CleanupCycle.start(level, nowMs);
+        if (cycle != null) {
+            ACTIVE.put(level.dimension(), cycle);
+        }
     }
 
-    private static final class ModLogger {
-        // Formats a concise summary line. Arguments are positional on purpose to avoid string building in the hot path.
-        static void info(ServerLevel level, Object... args) {
-            level.getServer().sendSystemMessage(
-                    net.minecraft.network.chat.Component.literal(
-                            "[smart_item_deleter_v2] " + String.format(
-                                    java.util.Locale.ROOT,
-                                    "Cleanup: removed %d of %d eligible (total=%d, threshold=%d, minAge=%dms, pct=%d%%, excess=%d)",
-                                    args
-                            )
-                    )
-            );
+    /** Advance all in-progress cycles within this tick's shared budget (cycleBudgetNanos, 0 = unlimited). */
+    private static void stepActive() {
+        if (ACTIVE.isEmpty()) return;
+        long budget = CleanupConfig.cycleBudgetNanos;
+        long deadline = budget > 0 ? System.nanoTime() + budget : Long.MAX_VALUE;
+        var it = ACTIVE.values().iterator();
+        while (it.hasNext()) {
+            CleanupCycle cycle = it.next();
+            if (cycle.step(deadline)) {
+                it.remove();
+            }
         }
     }
 }
@@ -0,0 +1,114 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import com.metl_group.smart_item_deleter_v2.config.CompiledFilter;
+import com.metl_group.smart_item_deleter_v2.core.plan.ItemFilter;
+import com.metl_group.smart_item_deleter_v2.core.plan.ItemView;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * Column copy of the values the planner reads from a cycle's items, taken on the server thread when each item is
+ * tracked. Index {@code i} corresponds to index {@code i} of the cycle's item list.
+ * Filter verdicts are resolved here as well (once per item type), so the snapshot can be planned on another thread
+ * without touching {@link CompiledFilter}'s lazy cache or the tag bindings.
+ */
+final class ItemSnapshot implements ItemView {
+    private final long[] firstSeen;
+    private final long[] chunk;
+    private final int[] itemId;
+    private final boolean[] named;
+    private final byte[] flags;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final CompiledFilter filter;
+    private final TickCostProbe probe;
+    private final BitSet resolved = new BitSet();
+    private final BitSet deletable = new BitSet();
+
+    /** {@code probe} may be null when the ordering does not need chunk flags. */
+    ItemSnapshot(int size, CompiledFilter filter, @Nullable TickCostProbe probe) {
+        this.filter = filter;
+        this.probe = probe;
+        firstSeen = new long[size];
+        chunk = new long[size];
+        itemId = new int[size];
+        named = new boolean[size];
+        flags = new byte[size];
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+    }
+
+    void set(int i, ItemEntity ie, long firstSeenMs) {
+        ItemStack stack = ie.getItem();
+        firstSeen[i] = firstSeenMs;
+        chunk[i] = ie.chunkPosition().toLong();
+        if (probe != null) flags[i] = (byte) probe.flags(chunk[i]);
+        int id = BuiltInRegistries.ITEM.getId(stack.getItem());
+        itemId[i] = id;
+        if (!resolved.get(id)) {
+            resolved.set(id);
+            if (filter.allowsDeletion(stack.getItem())) deletable.set(id);
+        }
+        named[i] = stack.has(DataComponents.CUSTOM_NAME);
+        x[i] = ie.getX();
+        y[i] = ie.getY();
+        z[i] = ie.getZ();
+    }
+
+    /** Verdicts for the item types seen so far; read-only once the snapshot is complete. */
+    ItemFilter filter() {
+        return deletable::get;
+    }
+
+    @Override
+    public int size() {
+        return firstSeen.length;
+    }
+
+    @Override
+    public long firstSeenMs(int i) {
+        return firstSeen[i];
+    }
+
+    @Override
+    public long chunk(int i) {
+        return chunk[i];
+    }
+
+    @Override
+    public int itemId(int i) {
+        return itemId[i];
+    }
+
+    @Override
+    public int chunkFlags(int i) {
+        return flags[i];
+    }
+
+    @Override
+    public boolean isNamed(int i) {
+        return named[i];
+    }
+
+    @Override
+    public double x(int i) {
+        return x[i];
+    }
+
+    @Override
+    public double y(int i) {
+        return y[i];
+    }
+
+    @Override
+    public double z(int i) {
+        return z[i];
+    }
+}
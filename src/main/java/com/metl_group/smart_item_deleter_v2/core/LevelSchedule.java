@@ -0,0 +1,116 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When a level runs its next cycle. Every level has its own next-run tick, staggered on creation so levels do not
+ * all start in the same tick. With adaptiveInterval the interval shrinks while the item count grows fast and grows
+ * while it is stable or below the threshold; independently, it backs off while the server's average tick time is
+ * above targetMspt. Growth is measured on the event-fed live count, which is kept in both item source modes.
+ * Server thread only.
+ */
+public final class LevelSchedule {
+    // Adaptive interval bounds relative to scanIntervalTicks.
+    private static final int MIN_DIVISOR = 4;
+    private static final int MAX_FACTOR = 8;
+    private static final int SAMPLE_TICKS = 20;
+    // Weight of the newest growth sample in the moving average.
+    private static final double RATE_SMOOTHING = 0.3;
+    // Growth per base interval, as a share of the threshold, that counts as fast / as stable.
+    private static final double FAST_GROWTH = 0.10;
+    private static final double STABLE_GROWTH = 0.01;
+    private static final double MAX_LOAD_BACKOFF = 4.0;
+    private static final double GOLDEN_FRACTION = 0.6180339887498949;
+
+    long nextReconcileTick;
+    boolean wasAbove;
+
+    private long nextRunTick;
+    private int intervalTicks;
+    private double ratePerSecond;
+    private long lastSampleTick = -1L;
+    private int lastSampleCount;
+    private boolean backedOff;
+
+    /** {@code slot} is the level's creation order; consecutive slots land far apart within one interval. */
+    LevelSchedule(long nowTick, int slot) {
+        int base = Math.max(1, CleanupConfig.scanIntervalTicks);
+        intervalTicks = base;
+        nextRunTick = nowTick + 1 + (long) (((slot * GOLDEN_FRACTION) % 1.0) * base);
+    }
+
+    /** Feed the current item count; sampled at most once per second into a moving average. */
+    void sample(long nowTick, int count) {
+        if (lastSampleTick < 0) {
+            lastSampleTick = nowTick;
+            lastSampleCount = count;
+            return;
+        }
+        long dt = nowTick - lastSampleTick;
+        if (dt < SAMPLE_TICKS) return;
+        double rate = (count - lastSampleCount) * 20.0 / dt;
+        ratePerSecond += RATE_SMOOTHING * (rate - ratePerSecond);
+        lastSampleTick = nowTick;
+        lastSampleCount = count;
+    }
+
+    boolean isDue(long nowTick) {
+        return nowTick >= nextRunTick;
+    }
+
+    /** Pick the next run after a run (or a check that found nothing to do) at {@code nowTick}. */
+    void reschedule(long nowTick, int count, int threshold, double mspt) {
+        int base = Math.max(1, CleanupConfig.scanIntervalTicks);
+        int min = Math.max(1, base / MIN_DIVISOR);
+        int max = base * MAX_FACTOR;
+        if (CleanupConfig.adaptiveInterval) {
+            double perInterval = ratePerSecond * base / 20.0;
+            long next;
+            if (count <= threshold) {
+                next = intervalTicks * 2L;
+            } else if (perInterval > FAST_GROWTH * threshold) {
+                next = intervalTicks / 2;
+            } else if (Math.abs(perInterval) < STABLE_GROWTH * threshold) {
+                next = intervalTicks + intervalTicks / 2 + 1;
+            } else {
+                next = (intervalTicks + (long) base) / 2;
+            }
+            intervalTicks = (int) Math.max(min, Math.min(max, next));
+        } else {
+            intervalTicks = base;
+        }
+
+        long delay = intervalTicks;
+        double target = CleanupConfig.targetMspt;
+        backedOff = target > 0 && mspt > target;
+        if (backedOff) {
+            delay = Math.min(max, Math.round(delay * Math.min(MAX_LOAD_BACKOFF, mspt / target)));
+        }
+        int jitter = CleanupConfig.jitterEnabled ? Math.min(CleanupConfig.scanJitterTicks, (int) delay - 1) : 0;
+        if (jitter > 0) {
+            delay += ThreadLocalRandom.current().nextInt(-jitter, jitter + 1);
+        }
+        nextRunTick = nowTick + Math.max(1L, delay);
+    }
+
+    public long nextRunTick() {
+        return nextRunTick;
+    }
+
+    /** Current adaptive interval, before load back-off and jitter. */
+    public int intervalTicks() {
+        return intervalTicks;
+    }
+
+    /** Smoothed change of the live item count. */
+    public double growthPerMinute() {
+        return ratePerSecond * 60.0;
+    }
+
+    /** Whether the last reschedule stretched the interval because of server load. */
+    public boolean isBackedOff() {
+        return backedOff;
+    }
+}
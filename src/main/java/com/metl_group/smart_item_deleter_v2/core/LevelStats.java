@@ -0,0 +1,118 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import com.metl_group.smart_item_deleter_v2.core.plan.ChunkHistogram;
+import net.minecraft.Util;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-level figures from the most recent cycles, read by {@code /cleanup stats}. Server thread only.
+ */
+public final class LevelStats {
+    /** How many of the densest chunks are remembered per scan. */
+    public static final int HOT_CHUNKS_KEPT = 5;
+
+    private static final Map<ResourceKey<Level>, LevelStats> BY_LEVEL = new HashMap<>();
+
+    /**
+     * Server-thread cycle phases in timing order; index 0 is the item scan, the rest follow {@code CleanupCycle.Phase}.
+     * "plan" is only the time spent collecting the worker's result; the planning itself is {@link #planNanos}.
+     */
+    public static final String[] PHASES = {"scan", "track", "plan", "merge", "discard"};
+
+    private ChunkHistogram.HotChunks hotChunks = ChunkHistogram.HotChunks.EMPTY;
+    private int chunksWithItems;
+
+    // Server-thread time per finished cycle, summed over all ticks it ran in.
+    private final LogHistogram cycleNanos = new LogHistogram();
+    private final long[] phaseNanosTotal = new long[PHASES.length];
+    // Worker time per plan, off the server thread.
+    private final LogHistogram planNanos = new LogHistogram();
+    private final RateWindow deletedRate = new RateWindow();
+    private final RateWindow mergedRate = new RateWindow();
+    private long cycles;
+    private long deletedTotal;
+    private long mergedTotal;
+
+    private LevelStats() {}
+
+    public static LevelStats of(ResourceKey<Level> dimension) {
+        return BY_LEVEL.computeIfAbsent(dimension, k -> new LevelStats());
+    }
+
+    static void clear() {
+        BY_LEVEL.clear();
+    }
+
+    void recordScan(ChunkHistogram histogram) {
+        hotChunks = histogram.top(HOT_CHUNKS_KEPT);
+        chunksWithItems = histogram.chunks();
+    }
+
+    void recordCycle(long[] phaseNanos, long planWorkerNanos, int deleted, int merged) {
+        long sum = 0;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanosTotal[i] += phaseNanos[i];
+            sum += phaseNanos[i];
+        }
+        cycleNanos.record(sum);
+        planNanos.record(planWorkerNanos);
+        cycles++;
+        deletedTotal += deleted;
+        mergedTotal += merged;
+        long now = Util.getMillis();
+        deletedRate.add(now, deleted);
+        mergedRate.add(now, merged);
+    }
+
+    public long cycles() {
+        return cycles;
+    }
+
+    /** Cycle cost quantile (0..1) in nanoseconds of server-thread time. */
+    public long cycleNanos(double quantile) {
+        return cycleNanos.percentile(quantile);
+    }
+
+    public long maxCycleNanos() {
+        return cycleNanos.max();
+    }
+
+    /** Planning time quantile (0..1) in nanoseconds on the worker pool. */
+    public long planNanos(double quantile) {
+        return planNanos.percentile(quantile);
+    }
+
+    /** Mean time per cycle spent in phase {@code i} (see {@link #PHASES}). */
+    public long avgPhaseNanos(int i) {
+        return cycles == 0 ? 0L : phaseNanosTotal[i] / cycles;
+    }
+
+    public long deletedPerMinute() {
+        return deletedRate.perMinute(Util.getMillis());
+    }
+
+    public long mergedPerMinute() {
+        return mergedRate.perMinute(Util.getMillis());
+    }
+
+    public long deletedTotal() {
+        return deletedTotal;
+    }
+
+    public long mergedTotal() {
+        return mergedTotal;
+    }
+
+    /** Densest chunks of the last scan, densest first. */
+    public ChunkHistogram.HotChunks hotChunks() {
+        return hotChunks;
+    }
+
+    public int chunksWithItems() {
+        return chunksWithItems;
+    }
+}
@@ -0,0 +1,115 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import com.metl_group.smart_item_deleter_v2.ModMain;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.neoforged.bus.api.EventPriority;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.entity.EntityJoinLevelEvent;
+import net.neoforged.neoforge.event.entity.EntityLeaveLevelEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
+import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.AABB;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live set of item entities per server level, maintained from join/leave events.
+ * Gives an O(1) item count for the threshold check and replaces the whole-world AABB scan.
+ * Server thread only.
+ */
+@EventBusSubscriber(modid = ModMain.MOD_ID)
+public final class LiveItemRegistry {
+    private static final Map<ResourceKey<Level>, LiveItemRegistry> BY_LEVEL = new HashMap<>();
+
+    private final ReferenceOpenHashSet<ItemEntity> items = new ReferenceOpenHashSet<>();
+
+    private LiveItemRegistry() {}
+
+    /** Registry for the given level; created empty on first access. */
+    public static LiveItemRegistry of(ServerLevel level) {
+        return BY_LEVEL.computeIfAbsent(level.dimension(), k -> new LiveItemRegistry());
+    }
+
+    public int count() {
+        return items.size();
+    }
+
+    /** Copy of the live items, skipping anything already removed. */
+    public List<ItemEntity> snapshot() {
+        ObjectArrayList<ItemEntity> out = new ObjectArrayList<>(items.size());
+        for (ItemEntity ie : items) {
+            if (!ie.isRemoved()) out.add(ie);
+        }
+        return out;
+    }
+
+    /**
+     * Safety net: compare against a full scan and fix any drift (e.g. entities added by paths that skip events).
+     * Returns the number of entries added or removed.
+     */
+    public int reconcile(ServerLevel level) {
+        List<ItemEntity> scanned = scanAll(level);
+        ReferenceOpenHashSet<ItemEntity> seen = new ReferenceOpenHashSet<>(scanned);
+        int drift = 0;
+        for (ItemEntity ie : scanned) {
+            if (items.add(ie)) drift++;
+        }
+        var it = items.iterator();
+        while (it.hasNext()) {
+            if (!seen.contains(it.next())) {
+                it.remove();
+                drift++;
+            }
+        }
+        return drift;
+    }
+
+    // Collect all item entities in the level. Bounding box is expanded beyond world border to be safe.
+    public static List<ItemEntity> scanAll(ServerLevel level) {
+        AABB bb = new AABB(
+                level.getWorldBorder().getMinX() - 1_000, level.getMinBuildHeight(),
+                level.getWorldBorder().getMinZ() - 1_000,
+                level.getWorldBorder().getMaxX() + 1_000, level.getMaxBuildHeight(),
+                level.getWorldBorder().getMaxZ() + 1_000
+        );
+        return level.getEntitiesOfClass(ItemEntity.class, bb);
+    }
+
+    // LOWEST so that entities cancelled by other mods never reach the registry.
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onJoin(final EntityJoinLevelEvent e) {
+        if (e.getEntity() instanceof ItemEntity ie && e.getLevel() instanceof ServerLevel level) {
+            of(level).items.add(ie);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLeave(final EntityLeaveLevelEvent e) {
+        if (e.getEntity() instanceof ItemEntity ie && e.getLevel() instanceof ServerLevel level) {
+            LiveItemRegistry reg = BY_LEVEL.get(level.dimension());
+            if (reg != null) reg.items.remove(ie);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(final LevelEvent.Unload e) {
+        if (e.getLevel() instanceof ServerLevel level) {
+            BY_LEVEL.remove(level.dimension());
+        }
+    }
+
+    @SubscribeEvent
+    public static void onServerStopped(final ServerStoppedEvent e) {
+        BY_LEVEL.clear();
+    }
+}
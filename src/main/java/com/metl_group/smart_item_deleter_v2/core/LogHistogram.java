@@ -0,0 +1,62 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+/**
+ * Fixed-size log-linear histogram for non-negative longs (HDR-style): 32 linear sub-buckets per power of two,
+ * so any recorded value is reported within ~3%. Recording is a couple of bit operations and one array increment.
+ * Not thread-safe.
+ */
+public final class LogHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = ((63 - SUB_BITS) << SUB_BITS) + 2 * SUB_COUNT;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+
+    public void record(long value) {
+        long v = Math.max(0L, value);
+        counts[index(v)]++;
+        total++;
+        if (v > max) max = v;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    /** Upper bound of the bucket holding the given quantile (0..1); 0 if empty. */
+    public long percentile(double q) {
+        if (total == 0) return 0L;
+        long rank = Math.max(1L, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(max, upperBound(i));
+        }
+        return max;
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(counts, 0L);
+        total = 0;
+        max = 0;
+    }
+
+    private static int index(long v) {
+        if (v < 2 * SUB_COUNT) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (v >>> shift);
+    }
+
+    private static long upperBound(int idx) {
+        if (idx < 2 * SUB_COUNT) return idx;
+        int shift = (idx >> SUB_BITS) - 1;
+        long top = idx - ((long) shift << SUB_BITS);
+        return ((top + 1) << shift) - 1;
+    }
+}
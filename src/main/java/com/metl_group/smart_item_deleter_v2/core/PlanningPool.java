@@ -0,0 +1,62 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import com.metl_group.smart_item_deleter_v2.core.plan.ChunkHistogram;
+import com.metl_group.smart_item_deleter_v2.core.plan.CleanupPlanner;
+import com.metl_group.smart_item_deleter_v2.core.plan.ItemView;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Worker pool for the planning stage. Each level's plan is its own task, so levels plan in parallel, and large
+ * levels additionally split the eligibility pass into slices. Inputs must be immutable snapshots taken on the
+ * server thread; nothing here touches entities or the world.
+ */
+final class PlanningPool {
+    private static final int SLICE = 16_384;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)),
+            pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("smart_item_deleter_v2-planner-" + t.getPoolIndex());
+                return t;
+            },
+            null, false);
+
+    private PlanningPool() {}
+
+    /** A finished plan and the worker time it took. */
+    record Result(CleanupPlanner.Plan plan, long nanos) {}
+
+    /** Plan on the pool; {@code histogram} must not be modified until the future completes. */
+    static CompletableFuture<Result> plan(CleanupPlanner planner, ItemView items, long nowMs, int current,
+                                          ChunkHistogram histogram) {
+        return CompletableFuture.supplyAsync(() -> {
+            long t0 = System.nanoTime();
+            int[] eligible = eligible(planner, items, nowMs);
+            CleanupPlanner.Plan plan = planner.plan(items, eligible, current, histogram);
+            return new Result(plan, System.nanoTime() - t0);
+        }, POOL);
+    }
+
+    // Slices are forked and joined in index order, so the result is ascending like a serial pass.
+    private static int[] eligible(CleanupPlanner planner, ItemView items, long nowMs) {
+        int size = items.size();
+        if (size <= SLICE) return planner.eligible(items, nowMs, 0, size);
+        List<ForkJoinTask<int[]>> slices = new ArrayList<>();
+        for (int from = 0; from < size; from += SLICE) {
+            int f = from, t = Math.min(size, from + SLICE);
+            slices.add(ForkJoinTask.adapt(() -> planner.eligible(items, nowMs, f, t)));
+        }
+        ForkJoinTask.invokeAll(slices);
+        IntArrayList out = new IntArrayList(size);
+        for (ForkJoinTask<int[]> slice : slices) out.addElements(out.size(), slice.join());
+        return out.toIntArray();
+    }
+}
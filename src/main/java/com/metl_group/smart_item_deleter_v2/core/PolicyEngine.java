@@ -1,15 +1,22 @@
 package com.metl_group.smart_item_deleter_v2.core;
 
 import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
+import com.metl_group.smart_item_deleter_v2.core.plan.CleanupPlanner;
+import com.metl_group.smart_item_deleter_v2.core.plan.ItemFilter;
+import com.metl_group.smart_item_deleter_v2.core.plan.PlayerIndex;
+import com.metl_group.smart_item_deleter_v2.core.plan.ZoneIndex;
+import com.metl_group.smart_item_deleter_v2.persist.ProtectionZonesData;
+import com.metl_group.smart_item_deleter_v2.persist.TrackedItemsData;
 import net.minecraft.core.component.DataComponents;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
-import net.minecraft.tags.TagKey;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.item.ItemEntity;
-import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.phys.AABB;
 
-import java.util.function.Predicate;
+import java.util.List;
 
 public final class PolicyEngine {
     private PolicyEngine(){}
@@ -20,50 +27,87 @@ public final class PolicyEngine {
         return CleanupConfig.protectNamedItems && stack.has(DataComponents.CUSTOM_NAME);
     }
 
-    /** Protect items close to players (configurable radius). */
-    public static boolean isProtectedByPlayerRadius(ServerLevel level, ItemEntity ie) {
+    /** Protect items close to players (configurable radius), looked up in the per-cycle player snapshot. */
+    public static boolean isProtectedByPlayerRadius(PlayerIndex players, ItemEntity ie) {
+        if (players.isEmpty()) return false;
+        AABB b = ie.getBoundingBox();
+        return players.isNear(b.minX, b.minY, b.minZ, b.maxX, b.maxY, b.maxZ);
+    }
+
+    /** Protect items inside an admin-defined protection zone of their level. */
+    public static boolean isProtectedByZone(ZoneIndex zones, ItemEntity ie) {
+        return zones.contains(ie.getX(), ie.getY(), ie.getZ());
+    }
+
+    /** The level's current protection zones; the index is immutable, so it can be handed to a planner as is. */
+    public static ZoneIndex zoneIndex(ServerLevel level) {
+        return ProtectionZonesData.get(level).index();
+    }
+
+    /**
+     * firstSeenMs for ageSource NATIVE: the entity's own age (ticks it existed while loaded, 50 ms each).
+     * Rows left from TRACKED mode still count if they are older, until the eviction sweep drops them; nothing is
+     * written. Items with an unlimited lifetime (age -32768) come out in the future and are never old enough.
+     */
+    public static long nativeFirstSeenMs(ItemEntity ie, long nowMs, TrackedItemsData legacy) {
+        long first = nowMs - ie.getAge() * 50L;
+        return legacy.size() == 0 ? first : Math.min(first, legacy.firstSeenMs(ie.getUUID(), first));
+    }
+
+    /**
+     * Snapshot the level's players for the radius check. Spectators are skipped, like the
+     * NO_SPECTATORS selector used by getEntitiesOfClass.
+     */
+    public static PlayerIndex playerIndex(ServerLevel level) {
         int r = CleanupConfig.playerSafeRadius;
-        if (r <= 0) return false;
-        return !level.getEntitiesOfClass(net.minecraft.world.entity.player.Player.class,
-                ie.getBoundingBox().inflate(r)).isEmpty();
+        if (r <= 0) return PlayerIndex.EMPTY;
+        List<ServerPlayer> players = level.players();
+        if (players.isEmpty()) return PlayerIndex.EMPTY;
+        double[] boxes = new double[players.size() * 6];
+        int n = 0;
+        for (ServerPlayer p : players) {
+            if (p.isSpectator()) continue;
+            AABB b = p.getBoundingBox();
+            int o = n++ * 6;
+            boxes[o] = b.minX;
+            boxes[o + 1] = b.minY;
+            boxes[o + 2] = b.minZ;
+            boxes[o + 3] = b.maxX;
+            boxes[o + 4] = b.maxY;
+            boxes[o + 5] = b.maxZ;
+        }
+        return PlayerIndex.build(boxes, n, r);
     }
 
     /**
      * Build a stable item key.
-     * For 1.21+ we avoid raw NBT (moved to data components). A simple, stable key is the registry ID.
+     * For 1.21+ we avoid raw NBT (moved to data components). A simple, stable key is the registry ID,
+     * returned as the registry's own ResourceLocation instance so no string is built per call.
      * If you later want to distinguish stacks by components, you can append a lightweight hash derived from components.
      */
-    public static String itemKey(ItemStack stack) {
-        ResourceLocation id = net.minecraft.core.registries.BuiltInRegistries.ITEM.getKey(stack.getItem());
-        return id.toString();
+    public static ResourceLocation itemKey(ItemStack stack) {
+        return BuiltInRegistries.ITEM.getKey(stack.getItem());
     }
 
-    /** Build the predicate that decides whether an ItemEntity is eligible for deletion. */
-    public static Predicate<ItemEntity> filterPredicate(ServerLevel level) {
-        return ie -> {
-            if (isProtectedByName(ie)) return false;
-            if (isProtectedByPlayerRadius(level, ie)) return false;
-
-            ItemStack stack = ie.getItem();
-            Item item = stack.getItem();
-            ResourceLocation id = net.minecraft.core.registries.BuiltInRegistries.ITEM.getKey(item);
-
-            boolean listed = CleanupConfig.filterList.stream().anyMatch(s -> {
-                if (s.startsWith("#")) {
-                    // Tag check via ItemStack#is to avoid deprecated holder API
-                    ResourceLocation tagId = ResourceLocation.tryParse(s.substring(1));
-                    if (tagId == null) return false;
-                    TagKey<Item> tag = TagKey.create(net.minecraft.core.registries.Registries.ITEM, tagId);
-                    return stack.is(tag);
-                } else {
-                    return s.equals(id.toString());
-                }
-            });
+    /**
+     * Planner for one cycle: the baked settings, the level's protection zones and a snapshot of its players. {@code filter} carries the
+     * filter list verdicts; pass a pre-resolved one if the planner runs off the server thread.
+     */
+    public static CleanupPlanner planner(ServerLevel level, ItemFilter filter) {
+        return new CleanupPlanner(plannerSettings(), playerIndex(level), zoneIndex(level), filter);
+    }
 
-            return switch (CleanupConfig.filterMode) {
-                case BLACKLIST -> !listed; // allowed to delete when NOT listed
-                case WHITELIST -> listed;  // allowed to delete when listed
-            };
-        };
+    public static CleanupPlanner.Settings plannerSettings() {
+        return new CleanupPlanner.Settings(
+                CleanupConfig.entityCountThreshold,
+                CleanupConfig.minItemAgeMs,
+                CleanupConfig.deletePercentage,
+                CleanupConfig.protectNamedItems,
+                switch (CleanupConfig.selectionStrategy) {
+                    case OLDEST -> CleanupPlanner.Ordering.OLDEST;
+                    case DENSEST_CHUNKS -> CleanupPlanner.Ordering.DENSEST_CHUNKS;
+                    case TICK_COST -> CleanupPlanner.Ordering.TICK_COST;
+                },
+                CleanupConfig.chunkDensityThreshold);
     }
 }
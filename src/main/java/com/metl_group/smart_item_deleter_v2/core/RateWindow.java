@@ -0,0 +1,31 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+/**
+ * Sliding one-minute sum in one-second slots, e.g. items deleted per minute. Not thread-safe.
+ */
+public final class RateWindow {
+    private static final int SLOTS = 60;
+
+    private final long[] sums = new long[SLOTS];
+    private final long[] stamps = new long[SLOTS]; // second each slot currently belongs to
+
+    public void add(long nowMs, long amount) {
+        long sec = nowMs / 1000L;
+        int slot = (int) Math.floorMod(sec, (long) SLOTS);
+        if (stamps[slot] != sec) {
+            stamps[slot] = sec;
+            sums[slot] = 0;
+        }
+        sums[slot] += amount;
+    }
+
+    /** Sum over the last 60 seconds. */
+    public long perMinute(long nowMs) {
+        long sec = nowMs / 1000L;
+        long sum = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            if (sec - stamps[i] < SLOTS) sum += sums[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,430 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import com.metl_group.smart_item_deleter_v2.ModMain;
+import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
+import com.metl_group.smart_item_deleter_v2.config.CompiledFilter;
+import com.metl_group.smart_item_deleter_v2.core.plan.ZoneIndex;
+import com.metl_group.smart_item_deleter_v2.persist.TrackedItemsData;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.SectionPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.NbtUtils;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.chunk.storage.EntityStorage;
+import net.minecraft.world.level.chunk.storage.SimpleRegionStorage;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.entity.EntityJoinLevelEvent;
+import net.neoforged.neoforge.event.server.ServerStoppingEvent;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Background sweep over the entity region files ({@code <dimension>/entities/r.X.Z.mca}) of every level. Items in
+ * chunks that are not loaded never reach a cycle, so they come back every time their chunk loads; the sweep drops
+ * the stored {@code minecraft:item} entries the cleanup rules allow deleting (filter list, named items, protection
+ * zones, minItemAgeMs).
+ * <p>
+ * The sweep never writes region files itself. On one background thread it reads each region's header to list the
+ * stored chunks, then reads and writes chunks through the level's own entity storage. That storage queues on the
+ * same IOWorker as the server's loads and saves, so the sweep is ordered with the server's own I/O. Reads are
+ * throttled to sweepMaxMibPerSecond.
+ * <p>
+ * Per region, the server thread is asked twice. First it says which chunks it holds (loaded, loading or in
+ * memory); those are skipped, and the rest are watched for entity loads while the sweep reads them. Then it drops
+ * the aged items and queues the rewritten chunks, except chunks that are held now or were loaded meanwhile. A chunk
+ * that could not be read, was written recently or uses an older data version is never written.
+ */
+@EventBusSubscriber(modid = ModMain.MOD_ID)
+public final class RegionSweep {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final int SECTOR_BYTES = 4096;
+    private static final int CHUNKS_PER_REGION = 1024;
+    private static final short NEVER_DESPAWNS = Short.MIN_VALUE;
+    private static final String ITEM_ENTITY = "minecraft:item";
+    private static final long SERVER_TIMEOUT_SECONDS = 30;
+
+    private static final ExecutorService IO = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "smart_item_deleter_v2-region-sweep");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final AtomicReference<RegionSweep> RUNNING = new AtomicReference<>();
+
+    /**
+     * Outcome for one level. {@code removed} counts the items deleted, or that would be deleted in a dry run.
+     * Skipped chunks: {@code loaded} (held by the server, or loaded while the sweep was reading it), {@code recent}
+     * (written within sweepRecentWriteSeconds), {@code other} (older data version or unreadable).
+     */
+    public record Report(ResourceKey<Level> dimension, boolean dryRun, int regions, int chunks, int changedChunks,
+                         int items, int removed, int skippedLoaded, int skippedRecent, int skippedOther,
+                         long bytesRead) {}
+
+    // Rules baked on the server thread; everything but the level is safe to read on the sweep thread.
+    private record Rules(ServerLevel level, SimpleRegionStorage storage, Path dir, Set<String> deletable,
+                         boolean protectNamed, long minAgeMs, ZoneIndex zones, long nowMs, int dataVersion) {}
+
+    // A chunk with candidates, waiting for the server's verdict. The tag is the sweep's own copy.
+    private record Candidate(long key, CompoundTag tag, IntArrayList items, List<UUID> ids) {}
+
+    private final MinecraftServer server;
+    private final boolean dryRun;
+    private final List<Rules> levels = new ArrayList<>();
+    private final Consumer<Report> onLevelDone;
+    private volatile boolean cancelled;
+    private long throttleStart;
+    private long throttleBytes;
+    // Chunks of the current region that may be rewritten, and those whose entities were loaded since. Server thread.
+    private ServerLevel watchedLevel;
+    private final LongOpenHashSet watched = new LongOpenHashSet();
+    private final LongOpenHashSet touched = new LongOpenHashSet();
+
+    // Counters of the level being swept.
+    private int regions, chunks, changedChunks, items, removed, skippedLoaded, skippedRecent, skippedOther;
+    private long bytesRead;
+
+    private RegionSweep(MinecraftServer server, boolean dryRun, Consumer<Report> onLevelDone) {
+        this.server = server;
+        this.dryRun = dryRun;
+        this.onLevelDone = onLevelDone;
+    }
+
+    /**
+     * Start a sweep of every level on the background thread; false if one is already running. Must be called on
+     * the server thread. {@code onLevelDone} runs on the server thread after each level.
+     */
+    public static boolean start(MinecraftServer server, boolean dryRun, Consumer<Report> onLevelDone) {
+        RegionSweep sweep = new RegionSweep(server, dryRun, onLevelDone);
+        if (!RUNNING.compareAndSet(null, sweep)) return false;
+        Set<String> deletable = deletableItems(CleanupConfig.compiledFilter);
+        long nowMs = server.getTickCount() * 50L;
+        int dataVersion = SharedConstants.getCurrentVersion().getDataVersion().getVersion();
+        for (ServerLevel level : server.getAllLevels()) {
+            Path dir = DimensionType.getStorageFolder(level.dimension(), server.getWorldPath(LevelResource.ROOT))
+                    .resolve("entities");
+            sweep.levels.add(new Rules(level, entityStorage(level), dir, deletable, CleanupConfig.protectNamedItems,
+                    CleanupConfig.minItemAgeMs, PolicyEngine.zoneIndex(level), nowMs, dataVersion));
+        }
+        IO.execute(sweep::run);
+        return true;
+    }
+
+    // The level's entity storage; its reads and writes queue on the same IOWorker as the server's own.
+    private static SimpleRegionStorage entityStorage(ServerLevel level) {
+        return ((EntityStorage) level.entityManager.permanentStorage).simpleRegionStorage;
+    }
+
+    /** Stop the running sweep after the chunk it is on; false if none is running. */
+    public static boolean cancel() {
+        RegionSweep sweep = RUNNING.get();
+        if (sweep == null) return false;
+        sweep.cancelled = true;
+        return true;
+    }
+
+    @SubscribeEvent
+    public static void onServerStopping(final ServerStoppingEvent e) {
+        cancel();
+    }
+
+    // Filter verdicts for every registered item, so the sweep thread never touches CompiledFilter's cache.
+    private static Set<String> deletableItems(CompiledFilter filter) {
+        Set<String> out = new HashSet<>();
+        for (Item item : BuiltInRegistries.ITEM) {
+            if (filter.allowsDeletion(item)) out.add(BuiltInRegistries.ITEM.getKey(item).toString());
+        }
+        return out;
+    }
+
+    private void run() {
+        try {
+            throttleStart = System.nanoTime();
+            for (Rules rules : levels) {
+                if (cancelled) break;
+                regions = chunks = changedChunks = items = removed = skippedLoaded = skippedRecent = skippedOther = 0;
+                bytesRead = 0;
+                sweepLevel(rules);
+                Report report = new Report(rules.level().dimension(), dryRun, regions, chunks, changedChunks, items,
+                        removed, skippedLoaded, skippedRecent, skippedOther, bytesRead);
+                LOGGER.info("Region sweep {}{}: {} regions, {} chunks, {} of {} items {}",
+                        report.dimension().location(), cancelled ? " (cancelled)" : "", regions, chunks,
+                        removed, items, dryRun ? "removable" : "removed");
+                server.execute(() -> onLevelDone.accept(report));
+            }
+        } catch (RuntimeException ex) {
+            LOGGER.error("Region sweep failed", ex);
+        } finally {
+            RUNNING.set(null);
+        }
+    }
+
+    private void sweepLevel(Rules rules) {
+        if (!Files.isDirectory(rules.dir())) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(rules.dir(), "r.*.*.mca")) {
+            for (Path file : files) {
+                if (cancelled) return;
+                try {
+                    sweepRegion(file, rules);
+                    regions++;
+                } catch (IOException ex) {
+                    LOGGER.warn("Region sweep skipped {}", file, ex);
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Region sweep could not list {}", rules.dir(), ex);
+        }
+    }
+
+    private void sweepRegion(Path file, Rules rules) throws IOException {
+        String[] parts = file.getFileName().toString().split("\\.");
+        int rx, rz;
+        try {
+            rx = Integer.parseInt(parts[1]);
+            rz = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException ex) {
+            return;
+        }
+        // Only the header is read directly, to list the stored chunks; payloads go through the entity storage.
+        ByteBuffer header = ByteBuffer.allocate(2 * SECTOR_BYTES);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < 2L * SECTOR_BYTES) return;
+            readFully(ch, header, 0);
+        }
+        int recentBefore = (int) (System.currentTimeMillis() / 1000) - CleanupConfig.sweepRecentWriteSeconds;
+
+        LongArrayList stored = new LongArrayList();
+        IntArrayList sizes = new IntArrayList();
+        for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+            int entry = header.getInt(i * 4);
+            if (entry == 0) continue;
+            chunks++;
+            if (header.getInt(SECTOR_BYTES + i * 4) > recentBefore) {
+                skippedRecent++;
+                continue;
+            }
+            stored.add(ChunkPos.asLong((rx << 5) + (i & 31), (rz << 5) + (i >> 5)));
+            sizes.add((entry & 0xFF) * SECTOR_BYTES);
+        }
+        if (stored.isEmpty() || cancelled) return;
+
+        long[] keys = stored.toLongArray();
+        boolean[] free = onServer(() -> watch(rules.level(), keys));
+        if (free == null) return;
+        try {
+            List<Candidate> candidates = new ArrayList<>();
+            for (int k = 0; k < keys.length && !cancelled; k++) {
+                if (!free[k]) {
+                    skippedLoaded++;
+                    continue;
+                }
+                Candidate c = readChunk(keys[k], rules);
+                bytesRead += sizes.getInt(k);
+                throttle(sizes.getInt(k));
+                if (c != null) candidates.add(c);
+            }
+            if (candidates.isEmpty() || cancelled) return;
+            Outcome outcome = onServer(() -> commit(candidates, rules));
+            if (outcome == null) return;
+            changedChunks += outcome.changedChunks();
+            removed += outcome.removed();
+            skippedLoaded += outcome.skippedLoaded();
+        } finally {
+            onServer(this::unwatch);
+        }
+    }
+
+    /**
+     * Read one chunk through the level's entity storage and collect the item entries that pass every rule except
+     * age; null if there are none or the chunk could not be read, which never leads to a write.
+     */
+    private Candidate readChunk(long key, Rules rules) {
+        CompoundTag tag;
+        try {
+            tag = rules.storage().read(new ChunkPos(key)).get(SERVER_TIMEOUT_SECONDS, TimeUnit.SECONDS).orElse(null);
+        } catch (Exception ex) {
+            LOGGER.warn("Region sweep could not read entity chunk {}", new ChunkPos(key), ex);
+            skippedOther++;
+            return null;
+        }
+        if (tag == null) return null;
+        // Older entries would need the data fixers; leave them to the server.
+        if (NbtUtils.getDataVersion(tag, -1) != rules.dataVersion()) {
+            skippedOther++;
+            return null;
+        }
+
+        ListTag entities = tag.getList("Entities", Tag.TAG_COMPOUND);
+        IntArrayList found = new IntArrayList();
+        List<UUID> ids = new ArrayList<>();
+        for (int e = 0; e < entities.size(); e++) {
+            CompoundTag entity = entities.getCompound(e);
+            if (!ITEM_ENTITY.equals(entity.getString("id"))) continue;
+            items++;
+            if (!isCandidate(entity, rules) || !entity.hasUUID("UUID")) continue;
+            found.add(e);
+            ids.add(entity.getUUID("UUID"));
+        }
+        return found.isEmpty() ? null : new Candidate(key, tag, found, ids);
+    }
+
+    // Filter list, name and zone protection; age needs the tracking data and is checked in commit.
+    private static boolean isCandidate(CompoundTag entity, Rules rules) {
+        CompoundTag stack = entity.getCompound("Item");
+        if (!rules.deletable().contains(stack.getString("id"))) return false;
+        if (rules.protectNamed() && stack.getCompound("components").contains("minecraft:custom_name")) return false;
+        if (entity.getShort("Age") == NEVER_DESPAWNS) return false;
+        ListTag pos = entity.getList("Pos", Tag.TAG_DOUBLE);
+        return pos.size() != 3 || !rules.zones().contains(pos.getDouble(0), pos.getDouble(1), pos.getDouble(2));
+    }
+
+    private record Outcome(int changedChunks, int removed, int skippedLoaded) {}
+
+    /**
+     * Server thread: drop the aged items and queue the rewritten chunks on the entity storage. A chunk that is held
+     * or was loaded since it was read is left alone. Any later load of the others is queued behind this write on
+     * the same IOWorker and sees the new data.
+     */
+    private Outcome commit(List<Candidate> candidates, Rules rules) {
+        ServerLevel level = rules.level();
+        TrackedItemsData data = TrackedItemsData.get(level);
+        int changed = 0, dropped = 0, skipped = 0;
+        for (Candidate c : candidates) {
+            if (touched.contains(c.key()) || isHeld(level, c.key())) {
+                skipped++;
+                continue;
+            }
+            ListTag entities = c.tag().getList("Entities", Tag.TAG_COMPOUND);
+            int drop = 0;
+            // Back to front, so earlier indices stay valid while removing.
+            for (int k = c.items().size() - 1; k >= 0; k--) {
+                int e = c.items().getInt(k);
+                long ageMs = Math.max(0, entities.getCompound(e).getShort("Age")) * 50L;
+                // Rebased timestamps can be negative, so only MIN_VALUE means "not tracked".
+                long firstSeen = data.firstSeenMs(c.ids().get(k), Long.MIN_VALUE);
+                if (firstSeen != Long.MIN_VALUE) ageMs = Math.max(ageMs, rules.nowMs() - firstSeen);
+                if (ageMs < rules.minAgeMs()) continue;
+                entities.remove(e);
+                drop++;
+            }
+            if (drop == 0) continue;
+            if (!dryRun) rules.storage().write(new ChunkPos(c.key()), c.tag());
+            dropped += drop;
+            changed++;
+        }
+        return new Outcome(changed, dropped, skipped);
+    }
+
+    /** Server thread: start watching the chunks that are not held; true per chunk that may be read. */
+    private boolean[] watch(ServerLevel level, long[] keys) {
+        watchedLevel = level;
+        boolean[] free = new boolean[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+            if (isHeld(level, keys[k])) continue;
+            free[k] = true;
+            watched.add(keys[k]);
+        }
+        return free;
+    }
+
+    private Void unwatch() {
+        watched.clear();
+        touched.clear();
+        watchedLevel = null;
+        return null;
+    }
+
+    // Entities loaded, or a load requested, or the chunk itself in memory.
+    private static boolean isHeld(ServerLevel level, long key) {
+        return level.entityManager.chunkLoadStatuses.containsKey(key)
+                || level.getChunkSource().hasChunk(ChunkPos.getX(key), ChunkPos.getZ(key));
+    }
+
+    /**
+     * A chunk whose entities are loaded fires a join event per entity. Loading a watched chunk between its read and
+     * its commit therefore marks it, even if it was unloaded and saved again meanwhile.
+     */
+    @SubscribeEvent
+    public static void onEntityJoin(final EntityJoinLevelEvent e) {
+        RegionSweep sweep = RUNNING.get();
+        if (sweep == null || sweep.watched.isEmpty() || e.getLevel() != sweep.watchedLevel) return;
+        Entity entity = e.getEntity();
+        long key = ChunkPos.asLong(SectionPos.blockToSectionCoord(entity.getBlockX()),
+                SectionPos.blockToSectionCoord(entity.getBlockZ()));
+        if (sweep.watched.contains(key)) sweep.touched.add(key);
+    }
+
+    /** Run {@code task} on the server thread and wait for it; null (and the sweep cancelled) if that fails. */
+    private <T> T onServer(Supplier<T> task) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(task, server);
+        try {
+            return future.get(SERVER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception ex) {
+            // Server stopping or stalled; stop rather than guess.
+            future.cancel(false);
+            cancelled = true;
+            return null;
+        }
+    }
+
+    private void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        int want = buf.remaining();
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new IOException("Unexpected end of region file");
+        }
+        bytesRead += want;
+        throttle(want);
+    }
+
+    // Sleep while the read rate since the sweep started is above sweepMaxMibPerSecond.
+    private void throttle(int bytes) {
+        int mib = CleanupConfig.sweepMaxMibPerSecond;
+        if (mib <= 0) return;
+        throttleBytes += bytes;
+        // In double: throttleBytes * 1e9 overflows a long after about 9 GB read.
+        long dueNanos = (long) (throttleBytes * 1e9 / ((double) mib * (1 << 20)));
+        long aheadNanos = dueNanos - (System.nanoTime() - throttleStart);
+        if (aheadNanos > 1_000_000L) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+        }
+    }
+}
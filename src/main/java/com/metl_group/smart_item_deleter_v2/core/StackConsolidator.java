@@ -0,0 +1,98 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.util.Mth;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.Objects;
+
+/**
+ * Merges identical drops (same item and components) that share a grid cell into as few entities as possible.
+ * Items are offered one by one; each (cell, stack) group keeps the entities that still have room, and an offered
+ * item is poured into them until it is empty (then discarded) or they are full (then it becomes the next target).
+ * Callers only offer items that pass the {@link PolicyEngine} checks at the time they are offered.
+ */
+final class StackConsolidator {
+    private final int cellSize;
+    private final int budget;
+    // Open targets per (cell, stack hash); lists are tiny, collisions are resolved by comparing cell and stack.
+    private final Long2ObjectOpenHashMap<ObjectArrayList<ItemEntity>> open = new Long2ObjectOpenHashMap<>();
+    private int merged;
+
+    StackConsolidator(int cellSize, int budget) {
+        this.cellSize = Math.max(1, cellSize);
+        this.budget = budget;
+    }
+
+    /** Entities merged away so far. */
+    int merged() {
+        return merged;
+    }
+
+    boolean exhausted() {
+        return merged >= budget;
+    }
+
+    /**
+     * Pour {@code ie} into earlier entities of its group. Returns true if it was emptied and discarded.
+     * Mirrors vanilla's merge guards: no unlimited-lifetime items, none with a pickup delay, and only drops with
+     * the same pickup target (owner-restricted drops never end up in someone else's stack).
+     */
+    boolean offer(ItemEntity ie) {
+        if (exhausted() || ie.isRemoved() || !ie.isAlive()) return false;
+        if (ie.getAge() == -32768 || ie.hasPickUpDelay()) return false;
+        ItemStack stack = ie.getItem();
+        if (stack.isEmpty() || !stack.isStackable()) return false;
+
+        long cell = cellOf(ie);
+        long key = HashCommon.mix(cell) ^ ItemStack.hashItemAndComponents(stack);
+        ObjectArrayList<ItemEntity> targets = open.computeIfAbsent(key, k -> new ObjectArrayList<>(2));
+
+        for (int i = 0; i < targets.size() && !stack.isEmpty(); ) {
+            ItemEntity dst = targets.get(i);
+            ItemStack dstStack = dst.getItem();
+            // Target vanished while the cycle was paused, or it is a hash collision from another group.
+            if (dst.isRemoved() || dstStack.isEmpty()) {
+                targets.remove(i);
+                continue;
+            }
+            if (cellOf(dst) != cell || !Objects.equals(dst.target, ie.target)
+                    || !ItemStack.isSameItemSameComponents(dstStack, stack)) {
+                i++;
+                continue;
+            }
+            int move = Math.min(dstStack.getMaxStackSize() - dstStack.getCount(), stack.getCount());
+            if (move > 0) {
+                dst.setItem(dstStack.copyWithCount(dstStack.getCount() + move));
+                stack = stack.copyWithCount(stack.getCount() - move);
+            }
+            if (dst.getItem().getCount() >= dst.getItem().getMaxStackSize()) {
+                targets.remove(i);
+            } else {
+                i++;
+            }
+        }
+
+        if (stack.isEmpty()) {
+            ie.discard();
+            merged++;
+            return true;
+        }
+        if (stack.getCount() != ie.getItem().getCount()) {
+            ie.setItem(stack);
+        }
+        if (stack.getCount() < stack.getMaxStackSize()) {
+            targets.add(ie);
+        }
+        return false;
+    }
+
+    private long cellOf(ItemEntity ie) {
+        return BlockPos.asLong(
+                Mth.floor(ie.getX() / cellSize), Mth.floor(ie.getY() / cellSize), Mth.floor(ie.getZ() / cellSize));
+    }
+}
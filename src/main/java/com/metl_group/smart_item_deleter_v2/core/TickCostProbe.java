@@ -0,0 +1,57 @@
+package com.metl_group.smart_item_deleter_v2.core;
+
+import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
+import com.metl_group.smart_item_deleter_v2.core.plan.ItemView;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.GameRules;
+import net.minecraft.world.level.Level;
+
+/**
+ * {@link ItemView#chunkFlags} for one snapshot, cached per chunk: entity-ticking, and always loaded (force-loaded,
+ * or within spawnChunkRadius of the overworld spawn; the spawn area is approximated as a square). Server thread only.
+ */
+final class TickCostProbe {
+    private final ServerLevel level;
+    private final LongSet forced;
+    private final int spawnRadius;
+    private final int spawnChunkX;
+    private final int spawnChunkZ;
+    private final Long2ByteOpenHashMap cache = new Long2ByteOpenHashMap();
+
+    private TickCostProbe(ServerLevel level) {
+        this.level = level;
+        this.forced = level.getForcedChunks();
+        BlockPos spawn = level.getSharedSpawnPos();
+        this.spawnRadius = level.dimension() == Level.OVERWORLD
+                ? level.getGameRules().getInt(GameRules.RULE_SPAWN_CHUNK_RADIUS)
+                : -1;
+        this.spawnChunkX = spawn.getX() >> 4;
+        this.spawnChunkZ = spawn.getZ() >> 4;
+        this.cache.defaultReturnValue((byte) -1);
+    }
+
+    /** Probe for the level, or null when the configured ordering does not use chunk flags. */
+    static TickCostProbe forConfig(ServerLevel level) {
+        return CleanupConfig.selectionStrategy == CleanupConfig.SelectionStrategy.TICK_COST
+                ? new TickCostProbe(level)
+                : null;
+    }
+
+    int flags(long chunk) {
+        byte cached = cache.get(chunk);
+        if (cached >= 0) return cached;
+        int x = ChunkPos.getX(chunk), z = ChunkPos.getZ(chunk);
+        int flags = 0;
+        if (level.isPositionEntityTicking(new BlockPos(x << 4, 0, z << 4))) flags |= ItemView.ENTITY_TICKING;
+        if (forced.contains(chunk)
+                || (Math.abs(x - spawnChunkX) <= spawnRadius && Math.abs(z - spawnChunkZ) <= spawnRadius)) {
+            flags |= ItemView.ALWAYS_LOADED;
+        }
+        cache.put(chunk, (byte) flags);
+        return flags;
+    }
+}
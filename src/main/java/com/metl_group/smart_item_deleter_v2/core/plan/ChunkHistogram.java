@@ -0,0 +1,52 @@
+package com.metl_group.smart_item_deleter_v2.core.plan;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+/**
+ * Item count per chunk (keyed by {@code ChunkPos#toLong}), built while a cycle scans its items.
+ */
+public final class ChunkHistogram {
+    private final Long2IntOpenHashMap counts = new Long2IntOpenHashMap();
+
+    public void add(long chunk) {
+        counts.addTo(chunk, 1);
+    }
+
+    public void remove(long chunk) {
+        if (counts.addTo(chunk, -1) <= 1) counts.remove(chunk);
+    }
+
+    public int count(long chunk) {
+        return counts.get(chunk);
+    }
+
+    public int chunks() {
+        return counts.size();
+    }
+
+    /** The {@code n} densest chunks, densest first. Partial selection, no full sort. */
+    public HotChunks top(int n) {
+        long[] keys = new long[n];
+        int[] vals = new int[n];
+        int size = 0;
+        for (Long2IntMap.Entry e : counts.long2IntEntrySet()) {
+            int v = e.getIntValue();
+            if (size == n && v <= vals[n - 1]) continue;
+            int i = size < n ? size++ : n - 1;
+            while (i > 0 && vals[i - 1] < v) {
+                keys[i] = keys[i - 1];
+                vals[i] = vals[i - 1];
+                i--;
+            }
+            keys[i] = e.getLongKey();
+            vals[i] = v;
+        }
+        return new HotChunks(java.util.Arrays.copyOf(keys, size), java.util.Arrays.copyOf(vals, size));
+    }
+
+    /** Chunk keys with their item counts, densest first. */
+    public record HotChunks(long[] chunks, int[] counts) {
+        public static final HotChunks EMPTY = new HotChunks(new long[0], new int[0]);
+    }
+}
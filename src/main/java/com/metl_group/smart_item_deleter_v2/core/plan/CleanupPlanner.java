@@ -0,0 +1,314 @@
+package com.metl_group.smart_item_deleter_v2.core.plan;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntHeapPriorityQueue;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.util.Arrays;
+
+/**
+ * Minecraft-independent part of a cleanup: which items are eligible (age, name, zones, player radius, filter list),
+ * in which order they are deleted, and how many (excess over the threshold, capped by the percentage quota).
+ * Works on an {@link ItemView}, so the same code runs against live entities in game and against synthetic
+ * populations in the benchmarks. Not thread-safe if the {@link ItemFilter} is not.
+ */
+public final class CleanupPlanner {
+    // EntityType.ITEM is 0.25 x 0.25; its box is centered on x/z and starts at y.
+    public static final double ITEM_HALF_WIDTH = 0.125;
+    public static final double ITEM_HEIGHT = 0.25;
+
+    /** Victim ordering; mirrors the selectionStrategy config. */
+    public enum Ordering { OLDEST, DENSEST_CHUNKS, TICK_COST }
+
+    /** Baked copy of the config values the planner needs. */
+    public record Settings(int threshold, long minAgeMs, int deletePercentage, boolean protectNamed,
+                           Ordering ordering, int chunkDensityThreshold) {}
+
+    /**
+     * Outcome of a plan: all eligible view indices (ascending) and, in deletion order, the victims a cycle should
+     * try. {@code order} is bounded by {@link #victimLimit}, so it only covers part of {@code eligible}.
+     */
+    public record Plan(int[] eligible, int[] order, int excess, int quota, int toDelete) {
+        public static final Plan NONE = new Plan(new int[0], new int[0], 0, 0, 0);
+    }
+
+    // Victims beyond toDelete kept in the order, since re-validation on apply skips some of them.
+    private static final int VICTIM_SLACK = 64;
+    // TICK_COST weights: items in lazy/border chunks barely tick; always-loaded chunks keep ticking without players.
+    private static final double NOT_TICKING_WEIGHT = 0.1;
+    private static final double ALWAYS_LOADED_WEIGHT = 2.0;
+
+    private final Settings settings;
+    private final PlayerIndex players;
+    private final ZoneIndex zones;
+    private final ItemFilter filter;
+
+    public CleanupPlanner(Settings settings, PlayerIndex players, ZoneIndex zones, ItemFilter filter) {
+        this.settings = settings;
+        this.players = players;
+        this.zones = zones;
+        this.filter = filter;
+    }
+
+    public Settings settings() {
+        return settings;
+    }
+
+    /** Plan a whole level in one go on the calling thread. {@code current} is the item count the excess is measured against. */
+    public Plan plan(ItemView items, long nowMs, int current) {
+        if (current <= settings.threshold()) return Plan.NONE;
+        ChunkHistogram histogram = new ChunkHistogram();
+        if (settings.ordering() != Ordering.OLDEST) {
+            for (int i = 0, size = items.size(); i < size; i++) histogram.add(items.chunk(i));
+        }
+        return plan(items, eligible(items, nowMs, 0, items.size()), current, histogram);
+    }
+
+    /**
+     * Counts and victim order for an already computed eligible set. {@code histogram} holds the item count of
+     * every chunk (all items, not just eligible ones) and is only read.
+     */
+    public Plan plan(ItemView items, int[] eligible, int current, ChunkHistogram histogram) {
+        int excess = excess(current);
+        int quota = quota(eligible.length);
+        int toDelete = Math.min(excess, quota);
+        int[] order = order(items, eligible, eligible.length, histogram, victimLimit(toDelete));
+        return new Plan(eligible, order, excess, quota, toDelete);
+    }
+
+    /** View indices in {@code [from, to)} that are eligible, ascending. Slices can be computed in parallel. */
+    public int[] eligible(ItemView items, long nowMs, int from, int to) {
+        int[] out = new int[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            if (isEligible(items, i, nowMs)) out[n++] = i;
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /** Old enough, not name-protected, outside every protection zone, not near a player and allowed by the filter list. */
+    public boolean isEligible(ItemView items, int i, long nowMs) {
+        if ((nowMs - items.firstSeenMs(i)) < settings.minAgeMs()) return false;
+        if (settings.protectNamed() && items.isNamed(i)) return false;
+        if (zones.contains(items.x(i), items.y(i), items.z(i))) return false;
+        if (isNearPlayer(items, i)) return false;
+        return filter.allowsDeletion(items.itemId(i));
+    }
+
+    /** Same test as {@code getEntitiesOfClass(Player.class, itemBox.inflate(r))}, on the item's box. */
+    public boolean isNearPlayer(ItemView items, int i) {
+        if (players.isEmpty()) return false;
+        double x = items.x(i), y = items.y(i), z = items.z(i);
+        return players.isNear(x - ITEM_HALF_WIDTH, y, z - ITEM_HALF_WIDTH,
+                x + ITEM_HALF_WIDTH, y + ITEM_HEIGHT, z + ITEM_HALF_WIDTH);
+    }
+
+    /** How far {@code current} is above the threshold. */
+    public int excess(int current) {
+        return Math.max(0, current - settings.threshold());
+    }
+
+    /** Share of the eligible items the delete percentage allows. */
+    public int quota(int eligible) {
+        int pct = Math.max(0, Math.min(100, settings.deletePercentage()));
+        return (int) Math.floor(eligible * (pct / 100.0));
+    }
+
+    /** How many victims a plan orders for {@code toDelete} deletions. */
+    public static int victimLimit(int toDelete) {
+        return toDelete + toDelete / 4 + VICTIM_SLACK;
+    }
+
+    /**
+     * The first {@code limit} victims among the first {@code n} entries of {@code eligible} (view indices).
+     * OLDEST: oldest first so the newest items remain safe. DENSEST_CHUNKS: chunks above the density threshold
+     * (counted in {@code histogram} over all items) come first, see {@link #drainHotChunksFirst}. TICK_COST: see
+     * {@link #byTickCost}. Apart from TICK_COST only the hot chunks are fully sorted; the rest is a bounded top-k
+     * selection, so a small quota over a large population costs O(n log k) instead of a full sort.
+     * Ties keep the order of {@code eligible}.
+     */
+    public int[] order(ItemView items, int[] eligible, int n, ChunkHistogram histogram, int limit) {
+        limit = Math.max(0, Math.min(limit, n));
+        // Work on positions with local copies so the comparators do not go through the view.
+        long[] first = new long[n];
+        for (int p = 0; p < n; p++) first[p] = items.firstSeenMs(eligible[p]);
+
+        int[] out = new int[limit];
+        if (limit == 0) return out;
+        if (settings.ordering() == Ordering.TICK_COST) {
+            byTickCost(items, eligible, n, first, histogram, out);
+            return out;
+        }
+        int k = 0;
+        boolean[] taken = null;
+        if (settings.ordering() == Ordering.DENSEST_CHUNKS) {
+            long[] chunk = new long[n];
+            for (int p = 0; p < n; p++) chunk[p] = items.chunk(eligible[p]);
+            taken = new boolean[n];
+            k = drainHotChunksFirst(first, chunk, histogram, taken, eligible, out);
+        }
+        for (int p : oldest(first, n, taken, limit - k)) out[k++] = eligible[p];
+        return out;
+    }
+
+    /**
+     * Greedy by marginal tick cost: repeatedly take the oldest remaining item of the chunk where one deletion frees
+     * the most tick time, then re-score that chunk with one item less. An item's cost is its chunk's weight
+     * (entity-ticking or not, always loaded or not) times {@code 1 + items in chunk / chunkDensityThreshold}, the
+     * second term standing in for the merge scans every item runs against its crowd. Equal scores go oldest first.
+     */
+    private void byTickCost(ItemView items, int[] eligible, int n, long[] first, ChunkHistogram histogram, int[] out) {
+        long[] chunk = new long[n];
+        int[] pos = new int[n];
+        for (int p = 0; p < n; p++) {
+            chunk[p] = items.chunk(eligible[p]);
+            pos[p] = p;
+        }
+        // Group by chunk, oldest first inside each group; each group is one segment [next, end) of pos.
+        IntArrays.mergeSort(pos, (a, b) -> chunk[a] != chunk[b] ? Long.compare(chunk[a], chunk[b]) : Long.compare(first[a], first[b]));
+        IntArrayList starts = new IntArrayList();
+        for (int k = 0; k < n; k++) {
+            if (k == 0 || chunk[pos[k]] != chunk[pos[k - 1]]) starts.add(k);
+        }
+        int segments = starts.size();
+        int[] next = starts.toIntArray();
+        int[] end = new int[segments];
+        int[] left = new int[segments];
+        double[] weight = new double[segments];
+        double[] score = new double[segments];
+        double scale = Math.max(1, settings.chunkDensityThreshold());
+        for (int s = 0; s < segments; s++) {
+            end[s] = s + 1 < segments ? next[s + 1] : n;
+            long c = chunk[pos[next[s]]];
+            // The histogram counts every item, eligible or not; at least the eligible ones are there.
+            left[s] = Math.max(histogram.count(c), end[s] - next[s]);
+            int flags = items.chunkFlags(eligible[pos[next[s]]]);
+            weight[s] = ((flags & ItemView.ENTITY_TICKING) != 0 ? 1.0 : NOT_TICKING_WEIGHT)
+                    * ((flags & ItemView.ALWAYS_LOADED) != 0 ? ALWAYS_LOADED_WEIGHT : 1.0);
+            score[s] = weight[s] * (1.0 + left[s] / scale);
+        }
+
+        // Scores only change while a segment is out of the queue.
+        IntHeapPriorityQueue queue = new IntHeapPriorityQueue(segments, (a, b) -> {
+            int c = Double.compare(score[b], score[a]);
+            if (c != 0) return c;
+            c = Long.compare(first[pos[next[a]]], first[pos[next[b]]]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        for (int s = 0; s < segments; s++) queue.enqueue(s);
+        for (int k = 0; k < out.length && !queue.isEmpty(); k++) {
+            int s = queue.dequeueInt();
+            out[k] = eligible[pos[next[s]++]];
+            if (next[s] < end[s]) {
+                left[s]--;
+                score[s] = weight[s] * (1.0 + left[s] / scale);
+                queue.enqueue(s);
+            }
+        }
+    }
+
+    /**
+     * Put victims from chunks above chunkDensityThreshold at the front of {@code out}: densest chunk first, oldest
+     * first within a chunk, each chunk only down to the threshold. Returns how many were written; they are marked
+     * in {@code taken}.
+     */
+    private int drainHotChunksFirst(long[] first, long[] chunk, ChunkHistogram histogram, boolean[] taken,
+                                    int[] eligible, int[] out) {
+        int density = settings.chunkDensityThreshold();
+        Long2IntOpenHashMap drain = new Long2IntOpenHashMap();
+        for (long c : chunk) {
+            int over = histogram.count(c) - density;
+            if (over > 0) drain.put(c, over);
+        }
+        if (drain.isEmpty()) return 0;
+
+        // Rank 0 is the densest hot chunk; equal counts are ranked by chunk key so plans are reproducible.
+        long[] hot = drain.keySet().toLongArray();
+        LongArrays.quickSort(hot, (a, b) -> {
+            int c = Integer.compare(histogram.count(b), histogram.count(a));
+            return c != 0 ? c : Long.compare(a, b);
+        });
+        Long2IntOpenHashMap rankOf = new Long2IntOpenHashMap(hot.length);
+        for (int r = 0; r < hot.length; r++) rankOf.put(hot[r], r);
+
+        IntArrayList hotPos = new IntArrayList();
+        int[] rank = new int[first.length];
+        for (int p = 0; p < chunk.length; p++) {
+            if (!drain.containsKey(chunk[p])) continue;
+            hotPos.add(p);
+            rank[p] = rankOf.get(chunk[p]);
+        }
+        int[] byRank = hotPos.toIntArray();
+        // Stable, so equal ages keep their position order.
+        IntArrays.mergeSort(byRank, (a, b) -> rank[a] != rank[b] ? Integer.compare(rank[a], rank[b]) : Long.compare(first[a], first[b]));
+
+        int k = 0;
+        for (int p : byRank) {
+            if (k == out.length) break;
+            int left = drain.get(chunk[p]);
+            if (left == 0) continue;
+            drain.put(chunk[p], left - 1);
+            taken[p] = true;
+            out[k++] = eligible[p];
+        }
+        return k;
+    }
+
+    /** The {@code m} oldest positions below {@code n} that are not taken, oldest first (ties by position). */
+    private static int[] oldest(long[] first, int n, boolean[] taken, int m) {
+        if (m <= 0) return new int[0];
+        int free = 0;
+        for (int p = 0; p < n; p++) if (taken == null || !taken[p]) free++;
+        if (m >= free) {
+            int[] all = new int[free];
+            for (int p = 0, w = 0; p < n; p++) if (taken == null || !taken[p]) all[w++] = p;
+            IntArrays.mergeSort(all, (a, b) -> Long.compare(first[a], first[b]));
+            return all;
+        }
+
+        // Max-heap on (first, position) holding the m oldest seen so far; the root is the youngest of them.
+        int[] heap = new int[m];
+        int size = 0;
+        for (int p = 0; p < n; p++) {
+            if (taken != null && taken[p]) continue;
+            if (size < m) {
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (!younger(first, p, heap[parent])) break;
+                    heap[i] = heap[parent];
+                    i = parent;
+                }
+                heap[i] = p;
+            } else if (younger(first, heap[0], p)) {
+                siftDown(first, heap, size, p);
+            }
+        }
+        IntArrays.quickSort(heap, (a, b) -> {
+            int c = Long.compare(first[a], first[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        return heap;
+    }
+
+    // Replace the heap root with p and restore the heap.
+    private static void siftDown(long[] first, int[] heap, int size, int p) {
+        int i = 0;
+        for (;;) {
+            int c = 2 * i + 1;
+            if (c >= size) break;
+            if (c + 1 < size && younger(first, heap[c + 1], heap[c])) c++;
+            if (!younger(first, heap[c], p)) break;
+            heap[i] = heap[c];
+            i = c;
+        }
+        heap[i] = p;
+    }
+
+    // Positions are unique, so this is a strict total order.
+    private static boolean younger(long[] first, int a, int b) {
+        return first[a] > first[b] || (first[a] == first[b] && a > b);
+    }
+}
@@ -0,0 +1,9 @@
+package com.metl_group.smart_item_deleter_v2.core.plan;
+
+/** Filter list verdict for an {@link ItemView#itemId(int) item id}. */
+@FunctionalInterface
+public interface ItemFilter {
+    ItemFilter ALLOW_ALL = itemId -> true;
+
+    boolean allowsDeletion(int itemId);
+}
@@ -0,0 +1,35 @@
+package com.metl_group.smart_item_deleter_v2.core.plan;
+
+/**
+ * Index-based, read-only view of one level's items, holding just what {@link CleanupPlanner} needs.
+ * Implementations decide where the values come from (live entities, a snapshot, a synthetic population);
+ * indices must stay stable while a plan is being made.
+ */
+public interface ItemView {
+    /** {@link #chunkFlags} bit: the item's chunk ticks entities. */
+    int ENTITY_TICKING = 1;
+    /** {@link #chunkFlags} bit: the chunk stays loaded without players nearby (forced or spawn chunks). */
+    int ALWAYS_LOADED = 2;
+
+    int size();
+
+    long firstSeenMs(int i);
+
+    /** {@code ChunkPos#toLong} of the chunk the item is in. */
+    long chunk(int i);
+
+    /** Dense item id as understood by the {@link ItemFilter} in use; in game this is the item registry id. */
+    int itemId(int i);
+
+    /** Tick-cost hints for the item's chunk; 0 if the view does not provide them. */
+    int chunkFlags(int i);
+
+    /** Carries a custom name. */
+    boolean isNamed(int i);
+
+    double x(int i);
+
+    double y(int i);
+
+    double z(int i);
+}
@@ -0,0 +1,95 @@
+package com.metl_group.smart_item_deleter_v2.core.plan;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Per-cycle snapshot of player bounding boxes, bucketed into a square XZ grid.
+ * Each player is registered in every cell its radius-inflated box touches, so a lookup only
+ * visits the (usually single) cell under the item and then runs the exact AABB test.
+ * Semantics match {@code getEntitiesOfClass(Player.class, itemBox.inflate(r))}: strict overlap on all three axes.
+ */
+public final class PlayerIndex {
+    public static final PlayerIndex EMPTY = new PlayerIndex(new double[0], 0, 0, 4);
+
+    private static final int MIN_CELL_SHIFT = 4; // chunk-sized cells
+
+    private final double[] boxes; // minX, minY, minZ, maxX, maxY, maxZ per player
+    private final int count;
+    private final double radius;
+    private final int cellShift;
+    private final Long2ObjectOpenHashMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+
+    private PlayerIndex(double[] boxes, int count, double radius, int cellShift) {
+        this.boxes = boxes;
+        this.count = count;
+        this.radius = radius;
+        this.cellShift = cellShift;
+    }
+
+    /**
+     * Build the index from {@code count} packed player boxes (6 doubles each).
+     * The cell size grows with the radius so a player never spans more than a handful of cells.
+     */
+    public static PlayerIndex build(double[] boxes, int count, int radius) {
+        if (count == 0 || radius <= 0) return EMPTY;
+        int shift = Math.max(MIN_CELL_SHIFT, 32 - Integer.numberOfLeadingZeros(radius));
+        PlayerIndex idx = new PlayerIndex(boxes, count, radius, shift);
+        for (int p = 0; p < count; p++) {
+            int o = p * 6;
+            int cx0 = cell(boxes[o] - radius, shift);
+            int cz0 = cell(boxes[o + 2] - radius, shift);
+            int cx1 = cell(boxes[o + 3] + radius, shift);
+            int cz1 = cell(boxes[o + 5] + radius, shift);
+            for (int cx = cx0; cx <= cx1; cx++) {
+                for (int cz = cz0; cz <= cz1; cz++) {
+                    idx.cells.computeIfAbsent(key(cx, cz), k -> new IntArrayList(2)).add(p);
+                }
+            }
+        }
+        return idx;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /** True if any player's box overlaps the given item box inflated by the radius. */
+    public boolean isNear(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        if (count == 0) return false;
+        // Same arithmetic as AABB#inflate so boundary cases resolve identically.
+        double iMinX = minX - radius, iMinY = minY - radius, iMinZ = minZ - radius;
+        double iMaxX = maxX + radius, iMaxY = maxY + radius, iMaxZ = maxZ + radius;
+
+        // Any overlapping player was registered in at least one cell under the (un-inflated) item box.
+        int cx0 = cell(minX, cellShift), cx1 = cell(maxX, cellShift);
+        int cz0 = cell(minZ, cellShift), cz1 = cell(maxZ, cellShift);
+        for (int cx = cx0; cx <= cx1; cx++) {
+            for (int cz = cz0; cz <= cz1; cz++) {
+                IntArrayList bucket = cells.get(key(cx, cz));
+                if (bucket == null) continue;
+                for (int i = 0, n = bucket.size(); i < n; i++) {
+                    int o = bucket.getInt(i) * 6;
+                    if (iMinX < boxes[o + 3] && iMaxX > boxes[o]
+                            && iMinY < boxes[o + 4] && iMaxY > boxes[o + 1]
+                            && iMinZ < boxes[o + 5] && iMaxZ > boxes[o + 2]) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int cell(double v, int shift) {
+        return ((int) Math.floor(v)) >> shift;
+    }
+
+    private static long key(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,125 @@
+package com.metl_group.smart_item_deleter_v2.core.plan;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+/**
+ * Immutable lookup structure for the protection zones of one dimension.
+ * Chunk areas are expanded into a set of chunk keys ({@code ChunkPos#asLong} layout), so their test is one hash
+ * probe. Boxes are bucketed into a square XZ grid like {@link PlayerIndex}; a lookup visits the single cell under
+ * the position. Areas and boxes too large to expand or bucket cheaply are kept in a short list checked linearly.
+ * Safe to share between threads once built.
+ */
+public final class ZoneIndex {
+    public static final ZoneIndex EMPTY =
+            new ZoneIndex(new int[0], 0, new LongOpenHashSet(), new Long2ObjectOpenHashMap<>(), new int[0]);
+
+    private static final int CELL_SHIFT = 6; // 64-block cells
+    // A box touching more cells than this is not bucketed (about 2048 x 2048 blocks).
+    private static final int MAX_BOX_CELLS = 1024;
+    // A chunk area larger than this is turned into a full-height box instead of being expanded.
+    private static final int MAX_AREA_CHUNKS = 4096;
+
+    private final int[] boxes; // minX, minY, minZ, maxX, maxY, maxZ per box, inclusive block coordinates
+    private final int boxCount;
+    private final LongOpenHashSet chunks;
+    private final Long2ObjectOpenHashMap<int[]> cells;
+    private final int[] large;
+
+    private ZoneIndex(int[] boxes, int boxCount, LongOpenHashSet chunks, Long2ObjectOpenHashMap<int[]> cells,
+                      int[] large) {
+        this.boxes = boxes;
+        this.boxCount = boxCount;
+        this.chunks = chunks;
+        this.cells = cells;
+        this.large = large;
+    }
+
+    /**
+     * Build the index from {@code areaCount} packed chunk areas (minChunkX, minChunkZ, maxChunkX, maxChunkZ) and
+     * {@code boxCount} packed block boxes (minX, minY, minZ, maxX, maxY, maxZ). All bounds are inclusive.
+     */
+    public static ZoneIndex build(int[] areas, int areaCount, int[] boxes, int boxCount) {
+        if (areaCount == 0 && boxCount == 0) return EMPTY;
+        int[] all = new int[(areaCount + boxCount) * 6];
+        System.arraycopy(boxes, 0, all, 0, boxCount * 6);
+        int n = boxCount;
+        LongOpenHashSet chunks = new LongOpenHashSet();
+        for (int a = 0; a < areaCount; a++) {
+            int o = a * 4;
+            int cx0 = areas[o], cz0 = areas[o + 1], cx1 = areas[o + 2], cz1 = areas[o + 3];
+            if ((long) (cx1 - cx0 + 1) * (cz1 - cz0 + 1) > MAX_AREA_CHUNKS) {
+                int b = n++ * 6;
+                all[b] = cx0 << 4;
+                all[b + 1] = Integer.MIN_VALUE;
+                all[b + 2] = cz0 << 4;
+                all[b + 3] = (cx1 << 4) + 15;
+                all[b + 4] = Integer.MAX_VALUE;
+                all[b + 5] = (cz1 << 4) + 15;
+                continue;
+            }
+            for (int cx = cx0; cx <= cx1; cx++) {
+                for (int cz = cz0; cz <= cz1; cz++) chunks.add(chunkKey(cx, cz));
+            }
+        }
+
+        Long2ObjectOpenHashMap<IntArrayList> buckets = new Long2ObjectOpenHashMap<>();
+        IntArrayList large = new IntArrayList();
+        for (int b = 0; b < n; b++) {
+            int o = b * 6;
+            int gx0 = all[o] >> CELL_SHIFT, gz0 = all[o + 2] >> CELL_SHIFT;
+            int gx1 = all[o + 3] >> CELL_SHIFT, gz1 = all[o + 5] >> CELL_SHIFT;
+            if ((long) (gx1 - gx0 + 1) * (gz1 - gz0 + 1) > MAX_BOX_CELLS) {
+                large.add(b);
+                continue;
+            }
+            for (int gx = gx0; gx <= gx1; gx++) {
+                for (int gz = gz0; gz <= gz1; gz++) {
+                    buckets.computeIfAbsent(cellKey(gx, gz), k -> new IntArrayList(2)).add(b);
+                }
+            }
+        }
+        Long2ObjectOpenHashMap<int[]> cells = new Long2ObjectOpenHashMap<>(buckets.size());
+        for (var e : buckets.long2ObjectEntrySet()) cells.put(e.getLongKey(), e.getValue().toIntArray());
+        return new ZoneIndex(all, n, chunks, cells, large.toIntArray());
+    }
+
+    public boolean isEmpty() {
+        return boxCount == 0 && chunks.isEmpty();
+    }
+
+    /** True if the block containing the given position lies in any zone. */
+    public boolean contains(double x, double y, double z) {
+        if (isEmpty()) return false;
+        int bx = (int) Math.floor(x), by = (int) Math.floor(y), bz = (int) Math.floor(z);
+        if (!chunks.isEmpty() && chunks.contains(chunkKey(bx >> 4, bz >> 4))) return true;
+        if (boxCount == 0) return false;
+        int[] bucket = cells.get(cellKey(bx >> CELL_SHIFT, bz >> CELL_SHIFT));
+        if (bucket != null) {
+            for (int b : bucket) {
+                if (inBox(b, bx, by, bz)) return true;
+            }
+        }
+        for (int b : large) {
+            if (inBox(b, bx, by, bz)) return true;
+        }
+        return false;
+    }
+
+    private boolean inBox(int b, int x, int y, int z) {
+        int o = b * 6;
+        return x >= boxes[o] && x <= boxes[o + 3]
+                && y >= boxes[o + 1] && y <= boxes[o + 4]
+                && z >= boxes[o + 2] && z <= boxes[o + 5];
+    }
+
+    // ChunkPos#asLong layout, so keys line up with ItemView#chunk.
+    private static long chunkKey(int cx, int cz) {
+        return (cx & 0xFFFFFFFFL) | ((long) cz << 32);
+    }
+
+    private static long cellKey(int gx, int gz) {
+        return ((long) gx << 32) | (gz & 0xFFFFFFFFL);
+    }
+}
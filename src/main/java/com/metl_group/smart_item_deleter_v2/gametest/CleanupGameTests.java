@@ -0,0 +1,252 @@
+package com.metl_group.smart_item_deleter_v2.gametest;
+
+import com.metl_group.smart_item_deleter_v2.ModMain;
+import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
+import com.metl_group.smart_item_deleter_v2.config.CompiledFilter;
+import com.metl_group.smart_item_deleter_v2.core.ItemCleanupSystem;
+import com.metl_group.smart_item_deleter_v2.persist.ProtectionZone;
+import com.metl_group.smart_item_deleter_v2.persist.ProtectionZonesData;
+import com.mojang.logging.LogUtils;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.gametest.framework.GameTestAssertException;
+import net.minecraft.gametest.framework.GameTestGenerator;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.gametest.framework.TestFunction;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.EntitySelector;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.phys.Vec3;
+import net.neoforged.neoforge.gametest.GameTestHolder;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * Load and regression suite for {@link ItemCleanupSystem#runCycle}. Each test spawns a seeded item population in
+ * an empty 64 x 8 x 64 arena, runs one cycle to track it and one cycle a minute later to delete, and checks the
+ * deletion count against a reference computed with vanilla entity queries. The deleting cycle's wall time must
+ * stay under {@code cycleCeilingBaseMs + items * cycleCeilingNsPerItem} (system properties, set by the
+ * gameTestServer run).
+ * <p>
+ * Items are full stacks without gravity, so vanilla merging and physics cannot change the counts. Every test is
+ * its own batch because a cycle covers the whole level. Run with {@code ./gradlew runGameTestServer}.
+ */
+@GameTestHolder(ModMain.MOD_ID)
+public final class CleanupGameTests {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final String ARENA = ModMain.MOD_ID + ":cleanup_arena";
+    private static final int ARENA_SIZE = 64;
+    private static final int TIMEOUT_TICKS = 200;
+
+    private static final String CEILING_BASE_PROPERTY = ModMain.MOD_ID + ".gametest.cycleCeilingBaseMs";
+    private static final String CEILING_PER_ITEM_PROPERTY = ModMain.MOD_ID + ".gametest.cycleCeilingNsPerItem";
+
+    // Settings every test runs with; the spawned mix is chosen so that each protection actually applies.
+    private static final int DELETE_PERCENTAGE = 80;
+    private static final long MIN_AGE_MS = 60_000L;
+    private static final int PLAYER_RADIUS = 8;
+    // Upper bound of entityCountThreshold in the config spec.
+    private static final int MAX_THRESHOLD = 10_000;
+    private static final Item PROTECTED_ITEM = Items.DIAMOND;
+    private static final Item[] ITEMS = {Items.COBBLESTONE, Items.DIRT, Items.ROTTEN_FLESH, Items.BONE, Items.ARROW};
+
+    enum Layout { CLUSTERED, SCATTERED }
+
+    /** Where mock players stand: nowhere, in the middle of the arena, or around its edge. */
+    enum Players { NONE, CENTER, EDGE }
+
+    private CleanupGameTests() {}
+
+    @GameTestGenerator
+    public static List<TestFunction> cycles() {
+        List<TestFunction> tests = new ArrayList<>();
+        for (int items : new int[]{1_000, 10_000, 50_000}) {
+            for (Layout layout : Layout.values()) {
+                for (Players players : Players.values()) {
+                    String name = String.format(Locale.ROOT, "cycle_%d_%s_players_%s",
+                            items, layout, players).toLowerCase(Locale.ROOT);
+                    tests.add(test(name, helper -> runScenario(helper, name, items, layout, players, false)));
+                }
+            }
+        }
+        String zoneTest = "cycle_zone_protects_items";
+        tests.add(test(zoneTest, helper -> runScenario(helper, zoneTest, 1_000, Layout.SCATTERED, Players.NONE, true)));
+        return tests;
+    }
+
+    private static TestFunction test(String name, Consumer<GameTestHelper> body) {
+        return new TestFunction(name, name, ARENA, TIMEOUT_TICKS, 0L, true, body);
+    }
+
+    private static void runScenario(GameTestHelper helper, String name, int count, Layout layout, Players players,
+                                    boolean zone) {
+        ServerLevel level = helper.getLevel();
+        List<ServerPlayer> mocks = new ArrayList<>();
+        List<ItemEntity> spawned = new ArrayList<>(count);
+        String zoneName = "gametest_" + name;
+        try {
+            // A cycle sees every item in the level; leftovers from earlier tests would skew the counts.
+            for (ItemEntity ie : level.getEntities(EntityType.ITEM, ie -> true)) ie.discard();
+            configure(count);
+            placePlayers(helper, players, mocks);
+            spawn(helper, count, layout, new SplittableRandom(count * 31L + layout.ordinal() * 7L + players.ordinal()),
+                    spawned);
+            if (zone) {
+                // Western half of the arena, full height.
+                BlockPos min = helper.absolutePos(new BlockPos(0, 0, 0));
+                BlockPos max = helper.absolutePos(new BlockPos(ARENA_SIZE / 2 - 1, 7, ARENA_SIZE - 1));
+                ProtectionZonesData.get(level).add(ProtectionZone.of(zoneName, ProtectionZone.Kind.BOX,
+                        min.getX(), min.getY(), min.getZ(), max.getX(), max.getY(), max.getZ()));
+            }
+
+            // Reference verdicts before anything runs, with the vanilla queries the planner replaces.
+            boolean[] protectedItem = new boolean[count];
+            int eligible = 0;
+            for (int i = 0; i < count; i++) {
+                protectedItem[i] = isProtected(level, spawned.get(i), zone ? zoneName : null);
+                if (!protectedItem[i]) eligible++;
+            }
+            int threshold = CleanupConfig.entityCountThreshold;
+            int expected = Math.min(count - threshold, (int) Math.floor(eligible * (DELETE_PERCENTAGE / 100.0)));
+
+            long nowMs = level.getServer().getTickCount() * 50L;
+            ItemCleanupSystem.runCycle(level, nowMs);
+            expectRemoved(spawned, protectedItem, 0, "tracking cycle");
+
+            long t0 = System.nanoTime();
+            ItemCleanupSystem.runCycle(level, nowMs + MIN_AGE_MS);
+            long nanos = System.nanoTime() - t0;
+            expectRemoved(spawned, protectedItem, expected, "deleting cycle");
+
+            long ceilingMs = Long.getLong(CEILING_BASE_PROPERTY, 50L)
+                    + count * Long.getLong(CEILING_PER_ITEM_PROPERTY, 5_000L) / 1_000_000L;
+            LOGGER.info("GameTest {}: {} items, {} eligible, {} deleted, cycle {} ms (ceiling {} ms)",
+                    name, count, eligible, expected,
+                    String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0), ceilingMs);
+            if (nanos > ceilingMs * 1_000_000L) {
+                throw new GameTestAssertException(String.format(Locale.ROOT,
+                        "Cycle over %d items took %.2f ms, ceiling is %d ms", count, nanos / 1_000_000.0, ceilingMs));
+            }
+            helper.succeed();
+        } finally {
+            for (ItemEntity ie : spawned) {
+                if (!ie.isRemoved()) ie.discard();
+            }
+            for (ServerPlayer p : mocks) level.getServer().getPlayerList().remove(p);
+            if (zone) ProtectionZonesData.get(level).remove(zoneName);
+            CleanupConfig.bake();
+        }
+    }
+
+    // Everything that could change the outcome is pinned, within the ranges the config spec accepts. The threshold
+    // is half the population, capped at the spec's maximum, so every size deletes.
+    private static void configure(int count) {
+        CleanupConfig.entityCountThreshold = Math.min(count / 2, MAX_THRESHOLD);
+        CleanupConfig.deletePercentage = DELETE_PERCENTAGE;
+        CleanupConfig.minItemAgeMs = MIN_AGE_MS;
+        CleanupConfig.protectNamedItems = true;
+        CleanupConfig.playerSafeRadius = PLAYER_RADIUS;
+        CleanupConfig.filterMode = CleanupConfig.FilterMode.BLACKLIST;
+        CleanupConfig.filterList = List.of("minecraft:diamond");
+        CleanupConfig.compiledFilter = CompiledFilter.compile(CleanupConfig.filterMode, CleanupConfig.filterList);
+        CleanupConfig.consolidateStacks = false;
+        // The deleting cycle ages the items by passing a later nowMs, which only the tracking table sees.
+        CleanupConfig.ageSource = CleanupConfig.AgeSource.TRACKED;
+    }
+
+    private static void placePlayers(GameTestHelper helper, Players players, List<ServerPlayer> out) {
+        double mid = ARENA_SIZE / 2.0;
+        switch (players) {
+            case NONE -> { }
+            case CENTER -> out.add(player(helper, mid, mid));
+            case EDGE -> {
+                out.add(player(helper, 2, 2));
+                out.add(player(helper, ARENA_SIZE - 2, 2));
+                out.add(player(helper, 2, ARENA_SIZE - 2));
+                out.add(player(helper, ARENA_SIZE - 2, ARENA_SIZE - 2));
+            }
+        }
+    }
+
+    private static ServerPlayer player(GameTestHelper helper, double x, double z) {
+        ServerPlayer p = helper.makeMockServerPlayerInLevel();
+        Vec3 pos = helper.absoluteVec(new Vec3(x, 1, z));
+        p.moveTo(pos.x, pos.y, pos.z);
+        return p;
+    }
+
+    /**
+     * About 5% blacklisted, 1% named, the rest cycles through {@link #ITEMS}. Clustered puts 90% of the items into
+     * a 4 x 4 block spot in the middle of the arena, scattered spreads them evenly.
+     */
+    private static void spawn(GameTestHelper helper, int count, Layout layout, SplittableRandom rnd, List<ItemEntity> out) {
+        ServerLevel level = helper.getLevel();
+        double mid = ARENA_SIZE / 2.0;
+        for (int i = 0; i < count; i++) {
+            double x, z;
+            if (layout == Layout.CLUSTERED && rnd.nextInt(10) != 0) {
+                x = mid + rnd.nextDouble(-2, 2);
+                z = mid + rnd.nextDouble(-2, 2);
+            } else {
+                x = rnd.nextDouble(0.5, ARENA_SIZE - 0.5);
+                z = rnd.nextDouble(0.5, ARENA_SIZE - 0.5);
+            }
+            int roll = rnd.nextInt(100);
+            Item item = roll < 5 ? PROTECTED_ITEM : ITEMS[i % ITEMS.length];
+            ItemStack stack = new ItemStack(item, item.getDefaultMaxStackSize());
+            if (roll == 99) stack.set(DataComponents.CUSTOM_NAME, Component.literal("keep"));
+
+            Vec3 pos = helper.absoluteVec(new Vec3(x, 1 + rnd.nextDouble(3), z));
+            ItemEntity ie = new ItemEntity(level, pos.x, pos.y, pos.z, stack, 0, 0, 0);
+            ie.setNoGravity(true);
+            level.addFreshEntity(ie);
+            out.add(ie);
+        }
+    }
+
+    // Same rules as PolicyEngine, spelled out with vanilla lookups instead of the planner's indexes.
+    private static boolean isProtected(ServerLevel level, ItemEntity ie, String zone) {
+        ItemStack stack = ie.getItem();
+        if (stack.has(DataComponents.CUSTOM_NAME)) return true;
+        if (stack.is(PROTECTED_ITEM)) return true;
+        if (zone != null) {
+            BlockPos pos = ie.blockPosition();
+            for (ProtectionZone z : ProtectionZonesData.get(level).zones()) {
+                if (z.name().equals(zone) && pos.getX() >= z.minX() && pos.getX() <= z.maxX()
+                        && pos.getY() >= z.minY() && pos.getY() <= z.maxY()
+                        && pos.getZ() >= z.minZ() && pos.getZ() <= z.maxZ()) {
+                    return true;
+                }
+            }
+        }
+        return !level.getEntitiesOfClass(Player.class, ie.getBoundingBox().inflate(PLAYER_RADIUS),
+                EntitySelector.NO_SPECTATORS).isEmpty();
+    }
+
+    private static void expectRemoved(List<ItemEntity> spawned, boolean[] protectedItem, int expected, String stage) {
+        int removed = 0;
+        for (int i = 0; i < spawned.size(); i++) {
+            if (!spawned.get(i).isRemoved()) continue;
+            if (protectedItem[i]) {
+                throw new GameTestAssertException(stage + " removed a protected item at " + spawned.get(i).blockPosition());
+            }
+            removed++;
+        }
+        if (removed != expected) {
+            throw new GameTestAssertException(stage + " removed " + removed + " items, expected " + expected);
+        }
+    }
+}
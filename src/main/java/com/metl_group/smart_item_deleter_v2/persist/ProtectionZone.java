@@ -0,0 +1,21 @@
+package com.metl_group.smart_item_deleter_v2.persist;
+
+/**
+ * An admin-defined area in which items are never cleaned up. Bounds are inclusive; for {@link Kind#CHUNKS}
+ * they are chunk coordinates and the Y bounds are unused (the zone spans the full height).
+ */
+public record ProtectionZone(
+        String name,
+        Kind kind,
+        int minX, int minY, int minZ,
+        int maxX, int maxY, int maxZ
+) {
+    public enum Kind { BOX, CHUNKS }
+
+    /** Zone with its bounds sorted, so each min is at most the matching max. */
+    public static ProtectionZone of(String name, Kind kind, int x0, int y0, int z0, int x1, int y1, int z1) {
+        return new ProtectionZone(name, kind,
+                Math.min(x0, x1), Math.min(y0, y1), Math.min(z0, z1),
+                Math.max(x0, x1), Math.max(y0, y1), Math.max(z0, z1));
+    }
+}
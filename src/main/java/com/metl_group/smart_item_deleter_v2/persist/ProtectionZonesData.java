@@ -0,0 +1,121 @@
+package com.metl_group.smart_item_deleter_v2.persist;
+
+import com.metl_group.smart_item_deleter_v2.core.plan.ZoneIndex;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Protection zones of one dimension (each level has its own data storage). The zone list is the saved state;
+ * the {@link ZoneIndex} the planner queries is rebuilt from it on every change, so lookups never see a
+ * half-edited index. Server thread only, apart from reading a built index.
+ */
+public final class ProtectionZonesData extends SavedData {
+    public static final String DATA_NAME = "smart_item_deleter_v2_zones";
+
+    // Insertion order, so /cleanup zone list is stable.
+    private final Map<String, ProtectionZone> zones = new LinkedHashMap<>();
+    private ZoneIndex index = ZoneIndex.EMPTY;
+
+    /** Accessor for this level's zones. */
+    public static ProtectionZonesData get(ServerLevel level) {
+        return level.getDataStorage().computeIfAbsent(
+                new SavedData.Factory<>(ProtectionZonesData::new, ProtectionZonesData::load),
+                DATA_NAME
+        );
+    }
+
+    public static ProtectionZonesData load(CompoundTag root, HolderLookup.Provider lookup) {
+        ProtectionZonesData data = new ProtectionZonesData();
+        for (Tag t : root.getList("zones", Tag.TAG_COMPOUND)) {
+            CompoundTag c = (CompoundTag) t;
+            int[] min = c.getIntArray("min");
+            int[] max = c.getIntArray("max");
+            ProtectionZone.Kind kind;
+            try {
+                kind = ProtectionZone.Kind.valueOf(c.getString("kind").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                continue;
+            }
+            if (min.length != 3 || max.length != 3) continue;
+            ProtectionZone zone = ProtectionZone.of(c.getString("name"), kind,
+                    min[0], min[1], min[2], max[0], max[1], max[2]);
+            data.zones.put(zone.name(), zone);
+        }
+        data.rebuild();
+        return data;
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag root, HolderLookup.Provider lookup) {
+        ListTag list = new ListTag();
+        for (ProtectionZone zone : zones.values()) {
+            CompoundTag c = new CompoundTag();
+            c.putString("name", zone.name());
+            c.putString("kind", zone.kind().name().toLowerCase(Locale.ROOT));
+            c.putIntArray("min", new int[]{zone.minX(), zone.minY(), zone.minZ()});
+            c.putIntArray("max", new int[]{zone.maxX(), zone.maxY(), zone.maxZ()});
+            list.add(c);
+        }
+        root.put("zones", list);
+        return root;
+    }
+
+    /** Add a zone; false if one with the same name already exists. */
+    public boolean add(ProtectionZone zone) {
+        if (zones.putIfAbsent(zone.name(), zone) != null) return false;
+        rebuild();
+        setDirty();
+        return true;
+    }
+
+    /** Remove a zone by name; false if there is none. */
+    public boolean remove(String name) {
+        if (zones.remove(name) == null) return false;
+        rebuild();
+        setDirty();
+        return true;
+    }
+
+    public Collection<ProtectionZone> zones() {
+        return Collections.unmodifiableCollection(zones.values());
+    }
+
+    /** Immutable index over the current zones; safe to hand to a planner on another thread. */
+    public ZoneIndex index() {
+        return index;
+    }
+
+    private void rebuild() {
+        int[] areas = new int[zones.size() * 4];
+        int[] boxes = new int[zones.size() * 6];
+        int areaCount = 0, boxCount = 0;
+        for (ProtectionZone z : zones.values()) {
+            if (z.kind() == ProtectionZone.Kind.CHUNKS) {
+                int o = areaCount++ * 4;
+                areas[o] = z.minX();
+                areas[o + 1] = z.minZ();
+                areas[o + 2] = z.maxX();
+                areas[o + 3] = z.maxZ();
+            } else {
+                int o = boxCount++ * 6;
+                boxes[o] = z.minX();
+                boxes[o + 1] = z.minY();
+                boxes[o + 2] = z.minZ();
+                boxes[o + 3] = z.maxX();
+                boxes[o + 4] = z.maxY();
+                boxes[o + 5] = z.maxZ();
+            }
+        }
+        index = ZoneIndex.build(areas, areaCount, boxes, boxCount);
+    }
+}
@@ -1,36 +1,205 @@
 package com.metl_group.smart_item_deleter_v2.persist;
 
+import com.metl_group.smart_item_deleter_v2.config.CleanupConfig;
+
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
 import net.minecraft.core.HolderLookup;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.StringTag;
 import net.minecraft.nbt.Tag;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.Mth;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.level.dimension.DimensionType;
 import net.minecraft.world.level.saveddata.SavedData;
+import net.minecraft.world.level.storage.LevelResource;
 import net.minecraft.world.phys.Vec3;
+import org.slf4j.Logger;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.UUID;
 
 public final class TrackedItemsData extends SavedData {
     public static final String DATA_NAME = "smart_item_deleter_v2_tracked_items";
 
-    private final Map<UUID, TrackedItem> map = new HashMap<>();
+    private static final Logger LOGGER = LogUtils.getLogger();
+    // Layout version of the .dat payload; 0/absent is the original list-of-compounds layout.
+    private static final int FORMAT_VERSION = 2;
+    private static final String STORAGE_LEGACY = "legacy";
+    private static final String STORAGE_COLUMNS = "columns";
+    private static final String STORAGE_BINARY = "binary";
+    private static final String STORAGE_NONE = "none";
+
+    // Rows live in a primitive table; items and dimensions are interned into palettes so a row is a handful of longs/ints.
+    private final TrackedTable table = new TrackedTable(256);
+    private final ObjectArrayList<ResourceLocation> itemPalette = new ObjectArrayList<>();
+    private final Object2IntOpenHashMap<ResourceLocation> itemIndex = new Object2IntOpenHashMap<>();
+    private final Reference2IntOpenHashMap<Item> itemByRef = new Reference2IntOpenHashMap<>();
+    private final ObjectArrayList<ResourceLocation> dimPalette = new ObjectArrayList<>();
+    private final Object2IntOpenHashMap<ResourceLocation> dimIndex = new Object2IntOpenHashMap<>();
+    private final MapView view = new MapView();
+
+    // Eviction state; runtime only, not persisted.
+    private int sweepCursor;
+    private long evictedStale;
+    private long evictedDead;
+    private long evictedCapacity;
+    // Whether the rows have been moved onto this session's clock yet (see adoptClock).
+    private boolean clockAdopted;
+
+    // Binary side file next to the .dat; null when the data is not bound to a level (e.g. the plain NBT loader).
+    private final Path binaryFile;
 
-    public TrackedItemsData() {}
+    public TrackedItemsData() {
+        this(null);
+    }
+
+    private TrackedItemsData(Path binaryFile) {
+        this.binaryFile = binaryFile;
+        itemIndex.defaultReturnValue(-1);
+        itemByRef.defaultReturnValue(-1);
+        dimIndex.defaultReturnValue(-1);
+    }
 
     /** Accessor for this world's saved data instance. */
     public static TrackedItemsData get(ServerLevel level) {
-        return level.getDataStorage().computeIfAbsent(
-            new SavedData.Factory<>(TrackedItemsData::new, TrackedItemsData::load),
+        TrackedItemsData data = level.getDataStorage().computeIfAbsent(
+            new SavedData.Factory<>(
+                () -> new TrackedItemsData(binaryFile(level)),
+                (root, lookup) -> load(root, lookup, binaryFile(level))),
             DATA_NAME
         );
+        data.adoptClock(level.getServer().getTickCount() * 50L);
+        return data;
+    }
+
+    /**
+     * Timestamps are {@code tickCount * 50}, which restarts at zero with every server session. On first access
+     * after loading, shift every row so the most recent lastSeen lands on {@code nowMs}: ages carry over from the
+     * previous session and the time the server was down does not count, like the game's own entity age.
+     */
+    private void adoptClock(long nowMs) {
+        if (clockAdopted) return;
+        clockAdopted = true;
+        TrackedTable t = table;
+        if (t.size() == 0) return;
+        long savedAt = Long.MIN_VALUE;
+        for (int s = 0; s < t.capacity(); s++) {
+            if (t.used[s]) savedAt = Math.max(savedAt, t.lastSeen[s]);
+        }
+        long shift = nowMs - savedAt;
+        if (shift == 0) return;
+        for (int s = 0; s < t.capacity(); s++) {
+            if (!t.used[s]) continue;
+            t.firstSeen[s] += shift;
+            t.lastSeen[s] += shift;
+        }
+    }
+
+    // Same folder the level's DimensionDataStorage writes the .dat into.
+    private static Path binaryFile(ServerLevel level) {
+        return DimensionType.getStorageFolder(level.dimension(), level.getServer().getWorldPath(LevelResource.ROOT))
+                .resolve("data").resolve(DATA_NAME + ".bin");
     }
 
     /** Loader required by SavedDataStorage in 1.21.1 (lookup present even if unused here). */
     public static TrackedItemsData load(CompoundTag root, HolderLookup.Provider lookup) {
-        TrackedItemsData data = new TrackedItemsData();
+        return load(root, lookup, null);
+    }
+
+    /**
+     * Reads any supported layout:
+     *  - version 0 (no "version" key): legacy list of compounds with string fields per entry, still written in
+     *    NBT mode so older versions of the mod can read it
+     *  - version 2, storage "columns": packed long/int arrays plus palettes inside the .dat
+     *  - version 2, storage "binary": rows live in the NIO side file
+     * Data read from a layout other than the configured one is marked dirty so the next save migrates it.
+     */
+    private static TrackedItemsData load(CompoundTag root, HolderLookup.Provider lookup, Path binaryFile) {
+        TrackedItemsData data = new TrackedItemsData(binaryFile);
+        CleanupConfig.TrackingPersistence mode = persistence();
+        if (mode == CleanupConfig.TrackingPersistence.NONE) {
+            // Start empty and overwrite whatever an earlier mode left behind.
+            data.setDirty();
+            return data;
+        }
+
+        int version = root.getInt("version");
+        String storage = root.getString("storage");
+        if (version < FORMAT_VERSION) {
+            data.readLegacy(root);
+            storage = STORAGE_LEGACY;
+        } else if (STORAGE_BINARY.equals(storage)) {
+            data.readBinary();
+        } else if (STORAGE_COLUMNS.equals(storage)) {
+            data.readColumns(root);
+        }
+        if (!storage.equals(storageName(mode, binaryFile))) {
+            data.setDirty();
+        }
+        return data;
+    }
+
+    /** New save signature in 1.21.1 (lookup present even if unused). */
+    @Override
+    public CompoundTag save(CompoundTag root, HolderLookup.Provider lookup) {
+        CleanupConfig.TrackingPersistence mode = persistence();
+        String storage = storageName(mode, binaryFile);
+        if (STORAGE_LEGACY.equals(storage)) {
+            writeLegacy(root);
+        } else {
+            root.putInt("version", FORMAT_VERSION);
+            root.putString("storage", storage);
+        }
+        switch (storage) {
+            case STORAGE_COLUMNS -> writeColumns(root);
+            // The .dat only keeps the marker; the rows are copied here and written off-thread.
+            case STORAGE_BINARY -> TrackedItemsFile.writeAsync(binaryFile, snapshot());
+            default -> { }
+        }
+        if (!STORAGE_BINARY.equals(storage) && binaryFile != null && Files.exists(binaryFile)) {
+            TrackedItemsFile.deleteAsync(binaryFile);
+        }
+        return root;
+    }
+
+    /** Wait for queued binary writes, e.g. on server stop after the final save. */
+    public static void flushPendingWrites() {
+        TrackedItemsFile.awaitPending();
+    }
+
+    private static CleanupConfig.TrackingPersistence persistence() {
+        // Config is baked on server start; fall back to the original in-.dat layout if it is not there yet.
+        CleanupConfig.TrackingPersistence mode = CleanupConfig.trackingPersistence;
+        return mode != null ? mode : CleanupConfig.TrackingPersistence.NBT;
+    }
+
+    private static String storageName(CleanupConfig.TrackingPersistence mode, Path binaryFile) {
+        return switch (mode) {
+            case NBT -> STORAGE_LEGACY;
+            case COMPACT -> STORAGE_COLUMNS;
+            case BINARY -> binaryFile != null ? STORAGE_BINARY : STORAGE_COLUMNS;
+            case NONE -> STORAGE_NONE;
+        };
+    }
+
+    private void readLegacy(CompoundTag root) {
         ListTag list = root.getList("items", Tag.TAG_COMPOUND);
         for (Tag t : list) {
             CompoundTag c = (CompoundTag) t;
@@ -44,50 +213,373 @@ public final class TrackedItemsData extends SavedData {
             long last = c.getLong("last");
 
             // Use ResourceLocation.parse for 1.21+
-            ResourceLocation dimKey = ResourceLocation.parse(dim);
-            Vec3 pos = new Vec3(x, y, z);
-
-            data.map.put(id, new TrackedItem(id, dimKey, pos, key, first, last));
+            int slot = slot(table.insert(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+            writeRow(slot, internDim(ResourceLocation.parse(dim)), x, y, z,
+                    internItem(ResourceLocation.parse(key)), first, last);
         }
-        return data;
     }
 
-    /** New save signature in 1.21.1 (lookup present even if unused). */
-    @Override
-    public CompoundTag save(CompoundTag root, HolderLookup.Provider lookup) {
+    private void readColumns(CompoundTag root) {
+        long[] hi = root.getLongArray("hi");
+        long[] lo = root.getLongArray("lo");
+        long[] first = root.getLongArray("first");
+        long[] last = root.getLongArray("last");
+        long[] pos = root.getLongArray("pos");
+        int[] item = root.getIntArray("item");
+        int[] dim = root.getIntArray("dim");
+        String[] items = readPalette(root.getList("itemPalette", Tag.TAG_STRING));
+        String[] dims = readPalette(root.getList("dimPalette", Tag.TAG_STRING));
+        restore(new TrackedItemsFile.Snapshot(hi.length, hi, lo, first, last, pos, item, dim, items, dims));
+    }
+
+    // The original layout, one compound per row; positions are stored at block precision.
+    private void writeLegacy(CompoundTag root) {
+        TrackedTable t = table;
         ListTag list = new ListTag();
-        for (TrackedItem ti : map.values()) {
+        for (int s = 0; s < t.capacity(); s++) {
+            if (!t.used[s]) continue;
             CompoundTag c = new CompoundTag();
-            c.putUUID("uuid", ti.uuid());
-            c.putString("dim", ti.dimension().toString());
-            c.putDouble("x", ti.pos().x);
-            c.putDouble("y", ti.pos().y);
-            c.putDouble("z", ti.pos().z);
-            c.putString("itemKey", ti.itemKey());
-            c.putLong("first", ti.firstSeenMs());
-            c.putLong("last", ti.lastSeenMs());
+            c.putUUID("uuid", new UUID(t.hi[s], t.lo[s]));
+            c.putString("dim", dimPalette.get(t.dim[s]).toString());
+            c.putDouble("x", BlockPos.getX(t.pos[s]));
+            c.putDouble("y", BlockPos.getY(t.pos[s]));
+            c.putDouble("z", BlockPos.getZ(t.pos[s]));
+            c.putString("itemKey", itemPalette.get(t.item[s]).toString());
+            c.putLong("first", t.firstSeen[s]);
+            c.putLong("last", t.lastSeen[s]);
             list.add(c);
         }
         root.put("items", list);
-        return root;
+    }
+
+    private void writeColumns(CompoundTag root) {
+        TrackedItemsFile.Snapshot s = snapshot();
+        root.putLongArray("hi", s.hi());
+        root.putLongArray("lo", s.lo());
+        root.putLongArray("first", s.firstSeen());
+        root.putLongArray("last", s.lastSeen());
+        root.putLongArray("pos", s.pos());
+        root.putIntArray("item", s.item());
+        root.putIntArray("dim", s.dim());
+        root.put("itemPalette", writePalette(s.itemPalette()));
+        root.put("dimPalette", writePalette(s.dimPalette()));
+    }
+
+    private void readBinary() {
+        if (binaryFile == null || !Files.exists(binaryFile)) return;
+        try {
+            restore(TrackedItemsFile.read(binaryFile));
+        } catch (IOException | RuntimeException ex) {
+            // Tracking is best-effort state; start fresh rather than failing the level load.
+            LOGGER.warn("Discarding unreadable tracked items file {}", binaryFile, ex);
+        }
+    }
+
+    /** Compacted copy of all used rows; cheap array copies only, no per-row objects. */
+    private TrackedItemsFile.Snapshot snapshot() {
+        TrackedTable t = table;
+        int n = t.size();
+        long[] hi = new long[n], lo = new long[n], first = new long[n], last = new long[n], pos = new long[n];
+        int[] item = new int[n], dim = new int[n];
+        int i = 0;
+        for (int s = 0; s < t.capacity(); s++) {
+            if (!t.used[s]) continue;
+            hi[i] = t.hi[s];
+            lo[i] = t.lo[s];
+            first[i] = t.firstSeen[s];
+            last[i] = t.lastSeen[s];
+            pos[i] = t.pos[s];
+            item[i] = t.item[s];
+            dim[i] = t.dim[s];
+            i++;
+        }
+        String[] items = new String[itemPalette.size()];
+        for (int k = 0; k < items.length; k++) items[k] = itemPalette.get(k).toString();
+        String[] dims = new String[dimPalette.size()];
+        for (int k = 0; k < dims.length; k++) dims[k] = dimPalette.get(k).toString();
+        return new TrackedItemsFile.Snapshot(n, hi, lo, first, last, pos, item, dim, items, dims);
+    }
+
+    private void restore(TrackedItemsFile.Snapshot s) {
+        // Re-intern through this instance's palettes so indices stay consistent.
+        int[] itemMap = new int[s.itemPalette().length];
+        for (int k = 0; k < itemMap.length; k++) itemMap[k] = internItem(ResourceLocation.parse(s.itemPalette()[k]));
+        int[] dimMap = new int[s.dimPalette().length];
+        for (int k = 0; k < dimMap.length; k++) dimMap[k] = internDim(ResourceLocation.parse(s.dimPalette()[k]));
+        for (int i = 0; i < s.count(); i++) {
+            int slot = slot(table.insert(s.hi()[i], s.lo()[i]));
+            table.firstSeen[slot] = s.firstSeen()[i];
+            table.lastSeen[slot] = s.lastSeen()[i];
+            table.pos[slot] = s.pos()[i];
+            table.item[slot] = itemMap[s.item()[i]];
+            table.dim[slot] = dimMap[s.dim()[i]];
+        }
+    }
+
+    private static String[] readPalette(ListTag list) {
+        String[] out = new String[list.size()];
+        for (int i = 0; i < out.length; i++) out[i] = list.getString(i);
+        return out;
+    }
+
+    private static ListTag writePalette(String[] palette) {
+        ListTag list = new ListTag();
+        for (String entry : palette) list.add(StringTag.valueOf(entry));
+        return list;
+    }
+
+    // --- Hot path (no allocation) ---
+
+    /** Palette index for a dimension; resolve once per cycle and pass it to {@link #touch}. */
+    public int internDim(ResourceLocation dimension) {
+        int idx = dimIndex.getInt(dimension);
+        if (idx < 0) {
+            idx = dimPalette.size();
+            dimPalette.add(dimension);
+            dimIndex.put(dimension, idx);
+        }
+        return idx;
+    }
+
+    /**
+     * Record that an item was seen now: inserts a row with firstSeen = lastSeen = now,
+     * or updates position, item and lastSeen in place.
+     * Only new rows mark the data dirty; lastSeen/position bumps ride along with the next meaningful save.
+     * Returns the row's firstSeenMs.
+     */
+    public long touch(UUID id, int dim, double x, double y, double z, Item item, long nowMs) {
+        int raw = table.insert(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        int slot = slot(raw);
+        boolean inserted = raw < 0;
+        long first = inserted ? nowMs : table.firstSeen[slot];
+        writeRow(slot, inserted ? dim : table.dim[slot], x, y, z, internItem(item), first, nowMs);
+        if (inserted) setDirty();
+        return first;
+    }
+
+    /** firstSeenMs of a tracked item, or {@code fallback} if it is not tracked. */
+    public long firstSeenMs(UUID id, long fallback) {
+        int slot = table.find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return slot < 0 ? fallback : table.firstSeen[slot];
+    }
+
+    public boolean contains(UUID id) {
+        return table.find(id.getMostSignificantBits(), id.getLeastSignificantBits()) >= 0;
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    // --- Eviction ---
+
+    /** Liveness probe for the sweep: true if the item behind a row is known to be gone. */
+    @FunctionalInterface
+    public interface GoneCheck {
+        boolean isGone(UUID id, long blockPos);
+    }
+
+    /**
+     * Visit up to {@code maxSlots} table slots from where the last call stopped and drop rows that were not
+     * seen for {@code staleMs} (0 = never) or that the probe reports gone. Returns the number of evicted rows.
+     */
+    public int sweep(long nowMs, long staleMs, int maxSlots, GoneCheck gone) {
+        TrackedTable t = table;
+        int evicted = 0;
+        for (int n = 0; n < maxSlots && t.size() > 0; n++) {
+            if (sweepCursor >= t.capacity()) sweepCursor = 0;
+            int s = sweepCursor;
+            if (!t.used[s]) {
+                sweepCursor++;
+                continue;
+            }
+            // On removal the cursor stays put: backward-shift deletion may move the next row into this slot.
+            if (staleMs > 0 && nowMs - t.lastSeen[s] >= staleMs) {
+                t.removeAt(s);
+                evictedStale++;
+                evicted++;
+            } else if (gone.isGone(new UUID(t.hi[s], t.lo[s]), t.pos[s])) {
+                t.removeAt(s);
+                evictedDead++;
+                evicted++;
+            } else {
+                sweepCursor++;
+            }
+        }
+        if (evicted > 0) setDirty();
+        return evicted;
+    }
+
+    /**
+     * Hard cap: once the table holds more than {@code maxEntries} rows, drop the least recently seen ones
+     * down to 90% of the cap. The slack means the O(n log n) cut only runs once per ~10% of cap inserts.
+     */
+    public int enforceCapacity(int maxEntries) {
+        TrackedTable t = table;
+        if (maxEntries <= 0 || t.size() <= maxEntries) return 0;
+        int target = maxEntries - maxEntries / 10;
+        int toEvict = t.size() - target;
+
+        long[] seen = new long[t.size()];
+        int n = 0;
+        for (int s = 0; s < t.capacity(); s++) {
+            if (t.used[s]) seen[n++] = t.lastSeen[s];
+        }
+        Arrays.sort(seen);
+        long cutoff = seen[toEvict - 1];
+
+        // Rows strictly older than the cutoff go first; ties at the cutoff fill the remainder.
+        int evicted = evictOlderThan(cutoff, false, toEvict);
+        evicted += evictOlderThan(cutoff, true, toEvict - evicted);
+        evictedCapacity += evicted;
+        if (evicted > 0) setDirty();
+        return evicted;
+    }
+
+    public long evictedStale() {
+        return evictedStale;
+    }
+
+    public long evictedDead() {
+        return evictedDead;
+    }
+
+    public long evictedCapacity() {
+        return evictedCapacity;
+    }
+
+    private int evictOlderThan(long cutoff, boolean inclusive, int limit) {
+        TrackedTable t = table;
+        int evicted = 0;
+        int s = 0;
+        while (s < t.capacity() && evicted < limit) {
+            long last = t.lastSeen[s];
+            if (t.used[s] && (last < cutoff || (inclusive && last == cutoff))) {
+                t.removeAt(s); // re-check the same slot, a later row may have shifted into it
+                evicted++;
+            } else {
+                s++;
+            }
+        }
+        return evicted;
     }
 
     // --- Mutators / Accessors ---
 
+    /**
+     * Read-only view for callers that want records; each lookup materializes a {@link TrackedItem}.
+     * Use {@link #putOrUpdate} and {@link #remove} to change rows.
+     */
     public Map<UUID, TrackedItem> map() {
-        return map;
+        return view;
     }
 
     /** Put or update a tracked item; marks data dirty for saving. */
     public void putOrUpdate(TrackedItem ti) {
-        map.put(ti.uuid(), ti);
+        int slot = slot(table.insert(ti.uuid().getMostSignificantBits(), ti.uuid().getLeastSignificantBits()));
+        writeRow(slot, internDim(ti.dimension()), ti.pos().x, ti.pos().y, ti.pos().z,
+                internItem(ResourceLocation.parse(ti.itemKey())), ti.firstSeenMs(), ti.lastSeenMs());
         setDirty();
     }
 
     /** Remove a tracked item; marks data dirty if present. */
     public void remove(UUID id) {
-        if (map.remove(id) != null) {
+        if (table.remove(id.getMostSignificantBits(), id.getLeastSignificantBits())) {
             setDirty();
         }
     }
+
+    // --- Internals ---
+
+    private void writeRow(int slot, int dim, double x, double y, double z, int item, long first, long last) {
+        table.dim[slot] = dim;
+        table.pos[slot] = BlockPos.asLong(Mth.floor(x), Mth.floor(y), Mth.floor(z));
+        table.item[slot] = item;
+        table.firstSeen[slot] = first;
+        table.lastSeen[slot] = last;
+    }
+
+    private int internItem(Item item) {
+        int idx = itemByRef.getInt(item);
+        if (idx < 0) {
+            idx = internItem(BuiltInRegistries.ITEM.getKey(item));
+            itemByRef.put(item, idx);
+        }
+        return idx;
+    }
+
+    private int internItem(ResourceLocation key) {
+        int idx = itemIndex.getInt(key);
+        if (idx < 0) {
+            idx = itemPalette.size();
+            itemPalette.add(key);
+            itemIndex.put(key, idx);
+        }
+        return idx;
+    }
+
+    private TrackedItem record(int s) {
+        TrackedTable t = table;
+        return new TrackedItem(new UUID(t.hi[s], t.lo[s]), dimPalette.get(t.dim[s]),
+                Vec3.atLowerCornerOf(BlockPos.of(t.pos[s])), itemPalette.get(t.item[s]).toString(),
+                t.firstSeen[s], t.lastSeen[s]);
+    }
+
+    private static int slot(int raw) {
+        return raw < 0 ? -raw - 1 : raw;
+    }
+
+    private final class MapView extends AbstractMap<UUID, TrackedItem> {
+        @Override
+        public TrackedItem get(Object key) {
+            if (!(key instanceof UUID id)) return null;
+            int s = table.find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            return s < 0 ? null : record(s);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof UUID id && contains(id);
+        }
+
+        @Override
+        public int size() {
+            return table.size();
+        }
+
+        @Override
+        public Set<Entry<UUID, TrackedItem>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public int size() {
+                    return table.size();
+                }
+
+                @Override
+                public Iterator<Entry<UUID, TrackedItem>> iterator() {
+                    return new Iterator<>() {
+                        private int next = advance(0);
+
+                        private int advance(int from) {
+                            while (from < table.capacity() && !table.used[from]) from++;
+                            return from;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < table.capacity();
+                        }
+
+                        @Override
+                        public Entry<UUID, TrackedItem> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+                            TrackedItem ti = record(next);
+                            next = advance(next + 1);
+                            return new SimpleImmutableEntry<>(ti.uuid(), ti);
+                        }
+                    };
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,154 @@
+package com.metl_group.smart_item_deleter_v2.persist;
+
+import com.mojang.logging.LogUtils;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary side file for tracked items, written with NIO on a background thread.
+ * Layout (big endian): magic, version, row count, item palette, dimension palette, then fixed 48-byte rows
+ * (uuid hi/lo, firstSeen, lastSeen, packed pos, item index, dim index).
+ * Writes go to a temp file that is atomically moved over the target; bursts for the same file coalesce.
+ */
+final class TrackedItemsFile {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    static final int MAGIC = 0x53494454; // "SIDT"
+    static final int VERSION = 1;
+    private static final int ROW_BYTES = 5 * Long.BYTES + 2 * Integer.BYTES;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private static final ExecutorService IO = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "smart_item_deleter_v2-tracking-io");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Map<Path, Snapshot> LATEST = new ConcurrentHashMap<>();
+
+    private TrackedItemsFile() {}
+
+    /** Compacted copy of the used table rows plus palettes; safe to hand to another thread. */
+    record Snapshot(int count, long[] hi, long[] lo, long[] firstSeen, long[] lastSeen, long[] pos,
+                    int[] item, int[] dim, String[] itemPalette, String[] dimPalette) {}
+
+    /** Queue a write; if an older snapshot for the same file is still waiting, it is replaced. */
+    static void writeAsync(Path file, Snapshot snapshot) {
+        if (LATEST.put(file, snapshot) != null) return; // a queued task will pick up the newer snapshot
+        IO.execute(() -> {
+            Snapshot s = LATEST.remove(file);
+            if (s == null) return;
+            try {
+                write(file, s);
+            } catch (IOException ex) {
+                LOGGER.error("Failed to write tracked items to {}", file, ex);
+            }
+        });
+    }
+
+    static void deleteAsync(Path file) {
+        IO.execute(() -> {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to delete {}", file, ex);
+            }
+        });
+    }
+
+    /** Block until all queued writes are on disk (server shutdown). */
+    static void awaitPending() {
+        try {
+            IO.submit(() -> {}).get(30, TimeUnit.SECONDS);
+        } catch (Exception ex) {
+            LOGGER.warn("Tracked items writer did not drain", ex);
+        }
+    }
+
+    static Snapshot read(Path file) throws IOException {
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            buf = ByteBuffer.allocate(Math.toIntExact(ch.size()));
+            while (buf.hasRemaining() && ch.read(buf) >= 0) { }
+        }
+        buf.flip();
+        if (buf.getInt() != MAGIC) throw new IOException("Not a tracked items file: " + file);
+        int version = buf.getInt();
+        if (version != VERSION) throw new IOException("Unsupported tracked items file version " + version);
+        int count = buf.getInt();
+        String[] items = readPalette(buf);
+        String[] dims = readPalette(buf);
+        long[] hi = new long[count], lo = new long[count], first = new long[count], last = new long[count], pos = new long[count];
+        int[] item = new int[count], dim = new int[count];
+        for (int i = 0; i < count; i++) {
+            hi[i] = buf.getLong();
+            lo[i] = buf.getLong();
+            first[i] = buf.getLong();
+            last[i] = buf.getLong();
+            pos[i] = buf.getLong();
+            item[i] = buf.getInt();
+            dim[i] = buf.getInt();
+        }
+        return new Snapshot(count, hi, lo, first, last, pos, item, dim, items, dims);
+    }
+
+    private static void write(Path file, Snapshot s) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+            buf.putInt(MAGIC).putInt(VERSION).putInt(s.count());
+            writePalette(ch, buf, s.itemPalette());
+            writePalette(ch, buf, s.dimPalette());
+            for (int i = 0; i < s.count(); i++) {
+                if (buf.remaining() < ROW_BYTES) flush(ch, buf);
+                buf.putLong(s.hi()[i]).putLong(s.lo()[i])
+                        .putLong(s.firstSeen()[i]).putLong(s.lastSeen()[i]).putLong(s.pos()[i])
+                        .putInt(s.item()[i]).putInt(s.dim()[i]);
+            }
+            flush(ch, buf);
+            ch.force(false);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Palette entries are resource locations, far below the buffer size.
+    private static void writePalette(FileChannel ch, ByteBuffer buf, String[] palette) throws IOException {
+        if (buf.remaining() < Integer.BYTES) flush(ch, buf);
+        buf.putInt(palette.length);
+        for (String entry : palette) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            if (buf.remaining() < Integer.BYTES + bytes.length) flush(ch, buf);
+            buf.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String[] readPalette(ByteBuffer buf) {
+        String[] out = new String[buf.getInt()];
+        for (int i = 0; i < out.length; i++) {
+            byte[] bytes = new byte[buf.getInt()];
+            buf.get(bytes);
+            out[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return out;
+    }
+
+    private static void flush(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+}
@@ -0,0 +1,151 @@
+package com.metl_group.smart_item_deleter_v2.persist;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table keyed on the two longs of a UUID, with struct-of-arrays value columns.
+ * Linear probing with backward-shift deletion, so there are no tombstones and updates never allocate.
+ * Slots are only stable until the next insert (which may rehash). Not thread-safe.
+ */
+final class TrackedTable {
+    private static final int MIN_CAPACITY = 16;
+
+    long[] hi;
+    long[] lo;
+    long[] firstSeen;
+    long[] lastSeen;
+    long[] pos;   // BlockPos.asLong of the floored position
+    int[] item;   // index into the owner's item palette
+    int[] dim;    // index into the owner's dimension palette
+    boolean[] used;
+
+    private int mask;
+    private int size;
+    private int maxFill;
+
+    TrackedTable(int expected) {
+        allocate(HashCommon.arraySize(Math.max(MIN_CAPACITY, expected), 0.75f));
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return used.length;
+    }
+
+    /** Slot holding the key, or -1. */
+    int find(long h, long l) {
+        int slot = slotOf(h, l);
+        while (used[slot]) {
+            if (hi[slot] == h && lo[slot] == l) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Slot for the key, inserting an empty row if absent.
+     * A newly inserted row is reported as {@code -(slot + 1)}.
+     */
+    int insert(long h, long l) {
+        if (size >= maxFill) rehash(used.length * 2);
+        int slot = slotOf(h, l);
+        while (used[slot]) {
+            if (hi[slot] == h && lo[slot] == l) return slot;
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        hi[slot] = h;
+        lo[slot] = l;
+        firstSeen[slot] = 0L;
+        lastSeen[slot] = 0L;
+        pos[slot] = 0L;
+        item[slot] = 0;
+        dim[slot] = 0;
+        size++;
+        return -(slot + 1);
+    }
+
+    boolean remove(long h, long l) {
+        int slot = find(h, l);
+        if (slot < 0) return false;
+        removeAt(slot);
+        return true;
+    }
+
+    /** Remove the row at a used slot. Rows after it may shift back by one slot. */
+    void removeAt(int slot) {
+        size--;
+        int last;
+        int cur = slot;
+        for (;;) {
+            cur = ((last = cur) + 1) & mask;
+            for (;;) {
+                if (!used[cur]) {
+                    used[last] = false;
+                    return;
+                }
+                int home = slotOf(hi[cur], lo[cur]);
+                if (last <= cur ? last >= home || home > cur : last >= home && home > cur) break;
+                cur = (cur + 1) & mask;
+            }
+            move(cur, last);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private void move(int from, int to) {
+        hi[to] = hi[from];
+        lo[to] = lo[from];
+        firstSeen[to] = firstSeen[from];
+        lastSeen[to] = lastSeen[from];
+        pos[to] = pos[from];
+        item[to] = item[from];
+        dim[to] = dim[from];
+    }
+
+    private int slotOf(long h, long l) {
+        return (int) HashCommon.mix(h ^ (l * 0x9E3779B97F4A7C15L)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        hi = new long[capacity];
+        lo = new long[capacity];
+        firstSeen = new long[capacity];
+        lastSeen = new long[capacity];
+        pos = new long[capacity];
+        item = new int[capacity];
+        dim = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        maxFill = HashCommon.maxFill(capacity, 0.75f);
+    }
+
+    private void rehash(int capacity) {
+        long[] oHi = hi, oLo = lo, oFirst = firstSeen, oLast = lastSeen, oPos = pos;
+        int[] oItem = item, oDim = dim;
+        boolean[] oUsed = used;
+        allocate(capacity);
+        for (int i = 0; i < oUsed.length; i++) {
+            if (!oUsed[i]) continue;
+            int slot = slotOf(oHi[i], oLo[i]);
+            while (used[slot]) slot = (slot + 1) & mask;
+            used[slot] = true;
+            hi[slot] = oHi[i];
+            lo[slot] = oLo[i];
+            firstSeen[slot] = oFirst[i];
+            lastSeen[slot] = oLast[i];
+            pos[slot] = oPos[i];
+            item[slot] = oItem[i];
+            dim[slot] = oDim[i];
+        }
+    }
+}